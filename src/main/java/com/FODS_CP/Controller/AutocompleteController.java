@@ -1,12 +1,20 @@
 package com.FODS_CP.Controller;
 
+import com.FODS_CP.data.DictionaryRegistry;
 import com.FODS_CP.data.FrequencyAwareTrie;
-import com.FODS_CP.data.UserStore;
+import com.FODS_CP.data.NamedDictionary;
 import com.FODS_CP.service.CategoryService;
-import com.FODS_CP.service.NGramService;
+import com.FODS_CP.service.LearningService;
+import com.FODS_CP.service.LoadShedder;
+import com.FODS_CP.service.QueryLogger;
+import com.FODS_CP.service.SuggestPipeline;
 import com.FODS_CP.service.Suggestion;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.github.benmanes.caffeine.cache.Cache;
@@ -20,220 +28,173 @@ import java.util.stream.Collectors;
 public class AutocompleteController {
 
     private final FrequencyAwareTrie trie;
-    private final NGramService nGramService;
-    private final UserStore userStore;
+    private final SuggestPipeline pipeline;
+    private final LearningService learningService;
     private final Cache<String, Object> suggestionCache;
     private final MeterRegistry meterRegistry;
+    private final LoadShedder loadShedder;
+    private final CategoryService categoryService;
+    private final ObjectMapper objectMapper;
+    private final DictionaryRegistry dictionaries;
+    private final QueryLogger queryLogger;
+    private final boolean preSerialized;
 
     @Autowired
     public AutocompleteController(FrequencyAwareTrie trie,
-                                  NGramService nGramService,
-                                  UserStore userStore,
+                                  SuggestPipeline pipeline,
+                                  LearningService learningService,
                                   Cache<String, Object> suggestionCache,
-                                  MeterRegistry meterRegistry) {
+                                  MeterRegistry meterRegistry,
+                                  LoadShedder loadShedder,
+                                  CategoryService categoryService,
+                                  ObjectMapper objectMapper,
+                                  DictionaryRegistry dictionaries,
+                                  QueryLogger queryLogger,
+                                  @Value("${autocomplete.cache.pre-serialized:true}") boolean preSerialized) {
         this.trie = trie;
-        this.nGramService = nGramService;
-        this.userStore = userStore;
+        this.pipeline = pipeline;
+        this.learningService = learningService;
         this.suggestionCache = suggestionCache;
         this.meterRegistry = meterRegistry;
+        this.loadShedder = loadShedder;
+        this.categoryService = categoryService;
+        this.objectMapper = objectMapper;
+        this.dictionaries = dictionaries;
+        this.queryLogger = queryLogger;
+        this.preSerialized = preSerialized;
     }
 
     @GetMapping("/suggest")
-    public ResponseEntity<SuggestResponse> suggest(
+    public ResponseEntity<?> suggest(
             @RequestParam(value = "q", required = false) String q,
             @RequestParam(value = "context", required = false) String context,
             @RequestParam(value = "limit", defaultValue = "6") int limit,
-            @RequestParam(value = "userId", required = false) String userId
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "group", defaultValue = "false") boolean group,
+            @RequestParam(value = "dict", required = false) String dict,
+            @RequestHeader(value = "Accept", required = false) String accept
     ) {
         long start = System.currentTimeMillis();
-        String prefix = (q == null) ? "" : q.trim();
-        String ctx = (context == null) ? "" : context.trim();
-
-        String cacheKey = "s:" + prefix.toLowerCase() + "|c:" + ctx.toLowerCase() + "|l:" + limit + "|u:" + (userId == null ? "" : userId);
-        @SuppressWarnings("unchecked")
-        Object cachedRaw = suggestionCache.getIfPresent(cacheKey);
-        if (cachedRaw instanceof List) {
-            try {
-                @SuppressWarnings("unchecked")
-                List<Suggestion> cached = (List<Suggestion>) cachedRaw;
-                if (meterRegistry != null) meterRegistry.counter("autocomplete.requests", "result", "cache-hit").increment();
-                long took = System.currentTimeMillis() - start;
-                return ResponseEntity.ok(new SuggestResponse(prefix, cached, new Meta(true, "v1", took), null));
-            } catch (Throwable ignored) {}
+        queryLogger.suggest(q, context, limit, userId, category, group, dict); // sampled, off by default
+        int categoryId = -1;
+        if (category != null && !category.isBlank()) {
+            categoryId = categoryService.idOf(category);
+            if (categoryId < 0) return ResponseEntity.badRequest().build();
         }
-        if (meterRegistry != null) meterRegistry.counter("autocomplete.requests", "result", "cache-miss").increment();
-
-        // if prefix empty -> next-word candidates
-        if (prefix.isEmpty()) {
-            List<NGramService.Candidate> candidates = nGramService.getNextWordCandidates(ctx, Math.max(limit * 2, 10));
-            List<Suggestion> out = new ArrayList<>();
-            for (NGramService.Candidate c : candidates) {
-                if (c == null || c.word == null) continue;
-                String phrase = ctx.isEmpty() ? c.word : (ctx + " " + c.word);
-                double cnt = getCandidateCountSafe(c);
-                long freqProxy = Math.max(1, Math.round(cnt));
-                Suggestion s = new Suggestion(phrase, freqProxy);
-                double ngramScore = getCandidateProbSafe(c);
-                double score = computeScore(s.getFrequency(), Math.log(ngramScore + 1e-9), s.getLastUsedEpochMillis(), 1.0, 0.0);
-                s.setScore(score);
-                out.add(s);
-            }
-            out.sort((a,b) -> Double.compare(b.getScore(), a.getScore()));
-            List<Suggestion> top = out.size() > limit ? out.subList(0, limit) : out;
-            suggestionCache.put(cacheKey, top);
+        NamedDictionary dictionary = null;
+        if (dict != null && !dict.isBlank()) {
+            // named dictionaries carry no categories
+            dictionary = dictionaries.get(dict);
+            if (dictionary == null || categoryId >= 0) return ResponseEntity.badRequest().build();
+        }
+        SuggestPipeline.Run run = pipeline.newRun(q, context, limit, userId, categoryId, dictionary);
+        String prefix = run.prefix;
+        // per-category lists are masked walks of the trie, cheap enough to skip the cache
+        Map<String, List<Suggestion>> groups = group && dictionary == null ? pipeline.groups(run) : null;
+        // each named dictionary has its own cache partition, so one tenant cannot evict another's hot queries
+        Cache<String, Object> cache = dictionary == null ? suggestionCache : dictionary.cache();
+
+        boolean binary = accept != null && accept.contains(CachedResponse.BINARY_TYPE);
+
+        String cacheKey = run.cacheKey();
+        if (cache.getIfPresent(cacheKey) instanceof CachedResponse cached) {
+            countRequest(dictionary, "cache-hit");
             long took = System.currentTimeMillis() - start;
-            if (meterRegistry != null) meterRegistry.timer("autocomplete.latency").record(took, java.util.concurrent.TimeUnit.MILLISECONDS);
-            return ResponseEntity.ok(new SuggestResponse(prefix, top, new Meta(false, "v1", took), null));
+            // hot path: bytes encoded at put time, only prefix and tookMs are filled in
+            if (binary) return ResponseEntity.ok().contentType(BINARY).body(cached.binary(prefix, true, took));
+            if (preSerialized && groups == null) return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cached.json(prefix, took));
+            return ResponseEntity.ok(new SuggestResponse(prefix, cached.suggestions, new Meta(true, "v1", took), cached.didYouMean).withGroups(groups));
         }
+        countRequest(dictionary, "cache-miss");
 
-        // non-empty prefix: trie + ngram + fuzzy merge
-        List<Suggestion> trieCandidates = trie.getSuggestions(prefix, Math.max(limit * 8, 30));
-        List<NGramService.Candidate> ng = nGramService.getNextWordCandidates(ctx, 20);
+        try (LoadShedder.Permit permit = loadShedder.tryAcquire("suggest")) {
+            if (permit == null) return ResponseEntity.status(503).header("Retry-After", "1").build();
 
-        Map<String, Suggestion> bucket = new HashMap<>();
-        if (trieCandidates != null) {
-            for (Suggestion s : trieCandidates) {
-                if (s != null && s.getText() != null) bucket.put(s.getText().toLowerCase(), s);
+            // if prefix empty -> next-word candidates
+            if (prefix.isEmpty()) {
+                List<Suggestion> top = pipeline.nextWords(run);
+                CachedResponse encoded = CachedResponse.encode(objectMapper, top, null);
+                cache.put(cacheKey, encoded);
+                long took = System.currentTimeMillis() - start;
+                recordLatency(dictionary, took);
+                if (binary) return ResponseEntity.ok().contentType(BINARY).body(encoded.binary(prefix, false, took));
+                return ResponseEntity.ok(new SuggestResponse(prefix, top, new Meta(false, "v1", took), null).withGroups(groups));
             }
-        }
 
-        if (ng != null) {
-            for (NGramService.Candidate c : ng) {
-                if (c == null || c.word == null) continue;
-                String nextWord = c.word;
-                if (!nextWord.toLowerCase().startsWith(prefix.toLowerCase())) continue;
-                String phrase = ctx.isEmpty() ? nextWord : (ctx + " " + nextWord);
-                if (!bucket.containsKey(phrase.toLowerCase())) {
-                    long fp = Math.max(1, Math.round(getCandidateCountSafe(c)));
-                    bucket.put(phrase.toLowerCase(), new Suggestion(phrase, fp));
-                }
+            // non-empty prefix: trie + ngram + fuzzy merge, cut short when the limiter says so
+            List<Suggestion> out = pipeline.completions(run);
+            if (permit.allowsRanking()) out = pipeline.ranked(run);
+            String didYouMean = null;
+            CachedResponse encoded = null;
+            if (permit.allowsCorrections()) {
+                out = pipeline.corrections(run);
+                didYouMean = pipeline.didYouMean(run);
+                encoded = CachedResponse.encode(objectMapper, out, didYouMean);
+                cache.put(cacheKey, encoded);
             }
-        }
 
-        if (trieCandidates == null || trieCandidates.isEmpty() || prefix.length() >= 2) {
-            List<Suggestion> fuzzy = trie.getNearbyByFuzzy(prefix, 20);
-            if (fuzzy != null) {
-                for (Suggestion s : fuzzy) {
-                    if (s == null) continue;
-                    String display = ctx.isEmpty() ? s.getText() : (ctx + " " + s.getText());
-                    bucket.putIfAbsent(display.toLowerCase(), new Suggestion(display, s.getFrequency()));
-                }
+            long took = System.currentTimeMillis() - start;
+            recordLatency(dictionary, took);
+            if (binary) {
+                if (encoded == null) encoded = CachedResponse.encode(objectMapper, out, didYouMean);
+                ResponseEntity.BodyBuilder ok = ResponseEntity.ok().contentType(BINARY);
+                if (permit.level != LoadShedder.Level.FULL) ok.header("X-Degraded", permit.level.name());
+                return ok.body(encoded.binary(prefix, false, took));
             }
-        }
-
-        List<Suggestion> combined = new ArrayList<>(bucket.values());
-        for (Suggestion s : combined) {
-            if (s == null) continue;
-            String display = s.getText();
-            String suffixWord = display.contains(" ") ? display.substring(display.lastIndexOf(' ') + 1) : display;
-            double ngramScore = findNGramScore(suffixWord, ng);
-            double fuzzySim = computeFuzzySim(prefix, suffixWord);
-            long lastUsed = s.getLastUsedEpochMillis();
-            long freq = s.getFrequency();
-
-            double personalBoost = 0.0;
-            if (userId != null && !userId.isBlank()) {
-                try {
-                    Map<String,Integer> uc = userStore.getUser(userId);
-                    if (uc != null) personalBoost = uc.getOrDefault(display.toLowerCase(), 0);
-                } catch (Throwable ignored) { personalBoost = 0.0; }
+            SuggestResponse body = new SuggestResponse(prefix, out, new Meta(false, "v1", took), didYouMean).withGroups(groups);
+            if (permit.level != LoadShedder.Level.FULL) {
+                return ResponseEntity.ok().header("X-Degraded", permit.level.name()).body(body);
             }
-
-            double score = computeScore(freq, ngramScore, lastUsed, fuzzySim, personalBoost);
-            s.setScore(score);
+            return ResponseEntity.ok(body);
         }
+    }
 
-        combined.sort((a,b) -> Double.compare(b.getScore(), a.getScore()));
-        List<Suggestion> out = combined.size() > limit ? combined.subList(0, limit) : combined;
+    private static final MediaType BINARY = MediaType.parseMediaType(CachedResponse.BINARY_TYPE);
 
-        // DID-YOU-MEAN (preferred trie.findDidYouMean then fuzzy fallback)
-        String didYouMean = null;
-        try {
-            if (prefix != null && prefix.length() >= 2) {
-                Optional<String> direct = trie.findDidYouMean(prefix);
-                if (direct.isPresent() && !direct.get().equalsIgnoreCase(prefix)) {
-                    didYouMean = direct.get();
-                } else {
-                    List<Suggestion> fuzzyList = trie.getNearbyByFuzzy(prefix, 5);
-                    if (fuzzyList != null && !fuzzyList.isEmpty()) {
-                        String candidate = fuzzyList.get(0).getText();
-                        if (candidate != null && !candidate.equalsIgnoreCase(prefix)) {
-                            double sim = com.FODS_CP.service.Fuzzy.similarity(prefix, candidate);
-                            if (sim >= 0.7) didYouMean = candidate;
-                        }
-                    }
-                }
-            }
-        } catch (Throwable t) {
-            System.out.println("[DidYouMean] error: " + t.getMessage());
-        }
+    // default dictionary keeps its existing meters; named ones get their own, tagged by dict
+    private void countRequest(NamedDictionary dictionary, String result) {
+        if (meterRegistry == null) return;
+        if (dictionary == null) meterRegistry.counter("autocomplete.requests", "result", result).increment();
+        else meterRegistry.counter("autocomplete.dict.requests", "dict", dictionary.name, "result", result).increment();
+    }
 
-        suggestionCache.put(cacheKey, out);
-        long took = System.currentTimeMillis() - start;
-        if (meterRegistry != null) meterRegistry.timer("autocomplete.latency").record(took, java.util.concurrent.TimeUnit.MILLISECONDS);
-        return ResponseEntity.ok(new SuggestResponse(prefix, out, new Meta(false, "v1", took), didYouMean));
+    private void recordLatency(NamedDictionary dictionary, long took) {
+        if (meterRegistry == null) return;
+        if (dictionary == null) meterRegistry.timer("autocomplete.latency").record(took, java.util.concurrent.TimeUnit.MILLISECONDS);
+        else meterRegistry.timer("autocomplete.dict.latency", "dict", dictionary.name).record(took, java.util.concurrent.TimeUnit.MILLISECONDS);
     }
 
     @PostMapping("/accept")
     public ResponseEntity<Void> accept(@RequestBody AcceptRequest req) {
         if (req == null || req.getUserId() == null || req.getSelected() == null) return ResponseEntity.badRequest().build();
-        try { userStore.increment(req.getUserId(), req.getSelected()); } catch (Throwable ignored) {}
-        try { trie.insert(req.getSelected(), 1); } catch (Throwable ignored) {}
+        queryLogger.accept(req.getUserId(), req.getSelected());
+        // per-user count, phrase index / n-grams or word trie, and the write-ahead log
+        try { learningService.accept(req.getUserId(), req.getSelected()); } catch (Throwable ignored) {}
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/trending")
     public ResponseEntity<List<String>> trending(@RequestParam(value="limit", defaultValue = "10") int limit) {
-        Map<String, Long> dict = trie.getVocabulary();
-        List<String> list = dict.entrySet().stream()
-                .sorted(Map.Entry.<String,Long>comparingByValue().reversed())
-                .limit(limit)
-                .map(Map.Entry::getKey)
+        // by decayed usage, so recently accepted words rise and stale ones sink
+        List<String> list = trie.entries().stream()
+                .sorted(Comparator.comparingDouble((FrequencyAwareTrie.Entry e) -> e.logScore).reversed())
+                .limit(Math.max(1, Math.min(limit, 100)))
+                .map(e -> e.word)
                 .collect(Collectors.toList());
         return ResponseEntity.ok(list);
     }
 
-    // helpers
-    private double findNGramScore(String candidate, List<NGramService.Candidate> ng) {
-        if (ng == null) return 0.0;
-        for (NGramService.Candidate c : ng) {
-            if (c == null) continue;
-            if (c.word != null && c.word.equalsIgnoreCase(candidate)) {
-                double v = getCandidateCountSafe(c);
-                if (v > 0) return Math.log(v + 1);
-                return getCandidateProbSafe(c);
-            }
-        }
-        return 0.0;
-    }
-
-    private double computeFuzzySim(String q, String candidate) {
-        try { return com.FODS_CP.service.Fuzzy.similarity(q, candidate); } catch (Throwable t) { return candidate.toLowerCase().startsWith(q.toLowerCase()) ? 1.0 : 0.0; }
-    }
-
-    private double computeScore(long frequency, double ngramProb, long lastUsedEpochMillis, double fuzzySim, double personalBoost) {
-        double alpha = 1.0, beta = 1.2, gamma = 0.6, delta = 1.0;
-        double personal = Math.log(1 + personalBoost * 6.0);
-        double freqPart = Math.log(frequency + 1);
-        double recencyDays = lastUsedEpochMillis > 0 ? (System.currentTimeMillis() - lastUsedEpochMillis) / (1000.0 * 60 * 60 * 24) : 3650.0;
-        double recencyBoost = 1.0 / (1.0 + recencyDays);
-        return alpha * freqPart + beta * ngramProb + gamma * recencyBoost + delta * fuzzySim + personal;
-    }
-
-    private double getCandidateCountSafe(NGramService.Candidate c) {
-        try { return c.count; } catch (Throwable ignored) {}
-        try {
-            var f = c.getClass().getDeclaredField("count");
-            f.setAccessible(true);
-            Object v = f.get(c);
-            if (v instanceof Number) return ((Number)v).doubleValue();
-        } catch (Throwable ignored) {}
-        return 0.0;
+    @GetMapping("/categories")
+    public ResponseEntity<List<String>> categories() {
+        List<String> out = new ArrayList<>();
+        for (int id : trie.categoryIds()) out.add(categoryService.name(id));
+        return ResponseEntity.ok(out);
     }
 
-    private double getCandidateProbSafe(NGramService.Candidate c) {
-        try { return c.count; } catch (Throwable ignored) {}
-        return getCandidateCountSafe(c);
+    @GetMapping("/dictionaries")
+    public ResponseEntity<Map<String, Object>> dictionaries() {
+        return ResponseEntity.ok(dictionaries.stats());
     }
 
     // DTOs
@@ -251,13 +212,17 @@ public class AutocompleteController {
         private List<Suggestion> suggestions;
         private Meta meta;
         private String didYouMean;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Map<String, List<Suggestion>> groups; // only with group=true
         public SuggestResponse(String prefix, List<Suggestion> suggestions, Meta meta, String didYouMean) {
             this.prefix = prefix; this.suggestions = suggestions; this.meta = meta; this.didYouMean = didYouMean;
         }
+        public SuggestResponse withGroups(Map<String, List<Suggestion>> groups) { this.groups = groups; return this; }
         public String getPrefix() { return prefix; }
         public List<Suggestion> getSuggestions() { return suggestions; }
         public Meta getMeta() { return meta; }
         public String getDidYouMean() { return didYouMean; }
+        public Map<String, List<Suggestion>> getGroups() { return groups; }
     }
 
     public static class Meta {
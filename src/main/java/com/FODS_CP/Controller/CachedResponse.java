@@ -0,0 +1,207 @@
+package com.FODS_CP.Controller;
+
+import com.FODS_CP.service.Suggestion;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A final suggest result as it sits in the suggestion cache: an immutable copy
+ * of the list plus its response body encoded once, so a hit only copies bytes.
+ *
+ * JSON is kept as three fragments around the two per-request values:
+ *   {"prefix":"  <prefix>  ","suggestions":[...],"meta":{...,"tookMs":  <took>  },"didYouMean":...}
+ * and is produced by the same ObjectMapper as a normal response, so the bytes
+ * are identical to what Jackson would have written. If that mapper writes some
+ * other shape (indented output, sorted properties, ...) the entry keeps no
+ * fragments and json() falls back to serializing with the mapper on each call.
+ *
+ * The binary layout (BINARY_TYPE) is for internal callers that do not want to
+ * parse JSON; all integers big-endian, strings as int length + UTF-8 (-1 = null):
+ *   byte 'F', byte 'S', byte version, byte fromCache, long tookMs,
+ *   string prefix, string didYouMean, int n,
+ *   n x (string text, long frequency, double score, long lastUsedEpochMillis, string category)
+ * tookMs sits at a fixed offset (4) so readers can pick it out without parsing.
+ */
+public final class CachedResponse {
+
+    public static final String BINARY_TYPE = "application/x-suggest-bin";
+    private static final byte VERSION = 1;
+    private static final int TOOK_OFFSET = 4;
+    private static final long TOOK_MARKER = Long.MIN_VALUE; // unique digits to split the JSON at
+
+    public final List<Suggestion> suggestions; // unmodifiable copies, never scored again
+    public final String didYouMean;
+    private final byte[] jsonHead;   // {"prefix":"                      (all three null when not pre-serialized)
+    private final byte[] jsonMiddle; // ","suggestions":...,"tookMs":
+    private final byte[] jsonTail;   // },"didYouMean":...}
+    private final byte[] binaryBody; // everything after the prefix string, see layout
+    private final ObjectMapper mapper; // only kept for the fallback
+
+    private CachedResponse(List<Suggestion> suggestions, String didYouMean,
+                           byte[] jsonHead, byte[] jsonMiddle, byte[] jsonTail, byte[] binaryBody, ObjectMapper mapper) {
+        this.suggestions = suggestions;
+        this.didYouMean = didYouMean;
+        this.jsonHead = jsonHead;
+        this.jsonMiddle = jsonMiddle;
+        this.jsonTail = jsonTail;
+        this.binaryBody = binaryBody;
+        this.mapper = mapper;
+    }
+
+    /** Encode a finished result once; the list is copied so later scoring cannot touch the cached entry. */
+    public static CachedResponse encode(ObjectMapper mapper, List<Suggestion> suggestions, String didYouMean) {
+        List<Suggestion> copy = new ArrayList<>(suggestions.size());
+        for (Suggestion s : suggestions) {
+            Suggestion c = new Suggestion(s.getText(), s.getFrequency());
+            c.setScore(s.getScore());
+            c.setLastUsedEpochMillis(s.getLastUsedEpochMillis());
+            c.setCategory(s.getCategory());
+            copy.add(c);
+        }
+        copy = Collections.unmodifiableList(copy);
+        byte[] binaryBody = encodeBinaryBody(copy, didYouMean);
+        byte[][] parts = split(mapper, copy, didYouMean);
+        if (parts == null) return new CachedResponse(copy, didYouMean, null, null, null, binaryBody, mapper);
+        return new CachedResponse(copy, didYouMean, parts[0], parts[1], parts[2], binaryBody, null);
+    }
+
+    // {head, middle, tail}, or null when the mapper does not write the layout in the class comment
+    private static byte[][] split(ObjectMapper mapper, List<Suggestion> list, String didYouMean) {
+        byte[] all;
+        try {
+            all = mapper.writeValueAsBytes(new AutocompleteController.SuggestResponse(
+                    "", list, new AutocompleteController.Meta(true, "v1", TOOK_MARKER), didYouMean));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        byte[] head = "{\"prefix\":\"".getBytes(StandardCharsets.UTF_8);
+        byte[] marker = Long.toString(TOOK_MARKER).getBytes(StandardCharsets.UTF_8);
+        int at = indexOf(all, marker, head.length);
+        // the marker must be the tookMs value itself, not digits inside some suggestion text
+        if (!startsWith(all, head) || at < 0 || indexOf(all, marker, at + 1) >= 0) return null;
+        return new byte[][] { head, slice(all, head.length, at), slice(all, at + marker.length, all.length) };
+    }
+
+    /** False when json() has to go through Jackson because the mapper's layout was not recognised. */
+    public boolean isPreSerialized() {
+        return jsonHead != null;
+    }
+
+    /** JSON body for one request: one allocation, no Jackson (unless not pre-serialized, see class comment). */
+    public byte[] json(String prefix, long tookMs) {
+        if (jsonHead == null) {
+            try {
+                return mapper.writeValueAsBytes(new AutocompleteController.SuggestResponse(
+                        prefix, suggestions, new AutocompleteController.Meta(true, "v1", tookMs), didYouMean));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("failed to encode suggest response", e);
+            }
+        }
+        byte[] p = JsonStringEncoder.getInstance().quoteAsUTF8(prefix == null ? "" : prefix);
+        byte[] t = Long.toString(tookMs).getBytes(StandardCharsets.US_ASCII);
+        byte[] out = new byte[jsonHead.length + p.length + jsonMiddle.length + t.length + jsonTail.length];
+        int o = 0;
+        System.arraycopy(jsonHead, 0, out, o, jsonHead.length); o += jsonHead.length;
+        System.arraycopy(p, 0, out, o, p.length); o += p.length;
+        System.arraycopy(jsonMiddle, 0, out, o, jsonMiddle.length); o += jsonMiddle.length;
+        System.arraycopy(t, 0, out, o, t.length); o += t.length;
+        System.arraycopy(jsonTail, 0, out, o, jsonTail.length);
+        return out;
+    }
+
+    /** Binary body for one request, see class comment. */
+    public byte[] binary(String prefix, boolean fromCache, long tookMs) {
+        byte[] p = (prefix == null ? "" : prefix).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(TOOK_OFFSET + 8 + 4 + p.length + binaryBody.length);
+        buf.put((byte) 'F').put((byte) 'S').put(VERSION).put((byte) (fromCache ? 1 : 0));
+        buf.putLong(tookMs);
+        buf.putInt(p.length).put(p);
+        buf.put(binaryBody);
+        return buf.array();
+    }
+
+    /** Decoder for internal callers of the binary format. */
+    public static AutocompleteController.SuggestResponse decodeBinary(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.get() != 'F' || buf.get() != 'S' || buf.get() != VERSION) throw new IllegalArgumentException("not a suggest payload");
+        boolean fromCache = buf.get() == 1;
+        long took = buf.getLong();
+        String prefix = readString(buf);
+        String didYouMean = readString(buf);
+        int n = buf.getInt();
+        List<Suggestion> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Suggestion s = new Suggestion(readString(buf), buf.getLong());
+            s.setScore(buf.getDouble());
+            s.setLastUsedEpochMillis(buf.getLong());
+            s.setCategory(readString(buf));
+            list.add(s);
+        }
+        return new AutocompleteController.SuggestResponse(prefix, list, new AutocompleteController.Meta(fromCache, "v1", took), didYouMean);
+    }
+
+    private static byte[] encodeBinaryBody(List<Suggestion> list, String didYouMean) {
+        List<byte[]> strings = new ArrayList<>();
+        int size = 4 + 4;
+        byte[] dym = didYouMean == null ? null : didYouMean.getBytes(StandardCharsets.UTF_8);
+        if (dym != null) size += dym.length;
+        for (Suggestion s : list) {
+            byte[] text = s.getText() == null ? null : s.getText().getBytes(StandardCharsets.UTF_8);
+            byte[] cat = s.getCategory() == null ? null : s.getCategory().getBytes(StandardCharsets.UTF_8);
+            strings.add(text);
+            strings.add(cat);
+            size += 4 + (text == null ? 0 : text.length) + 8 + 8 + 8 + 4 + (cat == null ? 0 : cat.length);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        putString(buf, dym);
+        buf.putInt(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Suggestion s = list.get(i);
+            putString(buf, strings.get(2 * i));
+            buf.putLong(s.getFrequency()).putDouble(s.getScore()).putLong(s.getLastUsedEpochMillis());
+            putString(buf, strings.get(2 * i + 1));
+        }
+        return buf.array();
+    }
+
+    private static void putString(ByteBuffer buf, byte[] s) {
+        if (s == null) { buf.putInt(-1); return; }
+        buf.putInt(s.length).put(s);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] hay, byte[] needle, int from) {
+        outer:
+        for (int i = from; i + needle.length <= hay.length; i++) {
+            for (int j = 0; j < needle.length; j++) if (hay[i + j] != needle[j]) continue outer;
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] a, byte[] p) {
+        if (a.length < p.length) return false;
+        for (int i = 0; i < p.length; i++) if (a[i] != p[i]) return false;
+        return true;
+    }
+
+    private static byte[] slice(byte[] a, int from, int to) {
+        byte[] out = new byte[to - from];
+        System.arraycopy(a, from, out, 0, out.length);
+        return out;
+    }
+}
@@ -27,6 +27,6 @@ public class LegacyController {
     ) {
         // AutocompleteController expects param name "q" for the query.
         // pass prefix as q and delegate.
-        return autocompleteController.suggest(prefix, context, limit, userId);
+        return autocompleteController.suggest(prefix, context, limit, userId, null, false, null, null);
     }
 }
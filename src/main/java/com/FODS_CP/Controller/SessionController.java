@@ -0,0 +1,71 @@
+package com.FODS_CP.Controller;
+
+import com.FODS_CP.service.KeystrokeSessionService;
+import com.FODS_CP.service.LoadShedder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Session-oriented suggest: open a session once, then send the full current
+ * query on every keystroke. The server keeps the per-prefix state and only
+ * extends (typing) or pops (backspace) it.
+ *
+ *   POST   /api/session                      -> {"session": "..."}
+ *   GET    /api/session/{token}/suggest?q=.. -> same body as /api/suggest, 404 once expired
+ *   DELETE /api/session/{token}
+ */
+@RestController
+@RequestMapping("/api/session")
+public class SessionController {
+
+    private final KeystrokeSessionService sessionService;
+    private final MeterRegistry meterRegistry;
+    private final LoadShedder loadShedder;
+
+    @Autowired
+    public SessionController(KeystrokeSessionService sessionService, MeterRegistry meterRegistry, LoadShedder loadShedder) {
+        this.sessionService = sessionService;
+        this.meterRegistry = meterRegistry;
+        this.loadShedder = loadShedder;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, String>> open() {
+        return ResponseEntity.ok(Map.of("session", sessionService.open()));
+    }
+
+    @GetMapping("/{token}/suggest")
+    public ResponseEntity<AutocompleteController.SuggestResponse> suggest(
+            @PathVariable("token") String token,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "context", required = false) String context,
+            @RequestParam(value = "limit", defaultValue = "6") int limit,
+            @RequestParam(value = "userId", required = false) String userId
+    ) {
+        long start = System.currentTimeMillis();
+        try (LoadShedder.Permit permit = loadShedder.tryAcquire("session")) {
+            if (permit == null) return ResponseEntity.status(503).header("Retry-After", "1").build();
+            KeystrokeSessionService.Result r = sessionService.suggest(token, q, context, limit, userId, permit);
+            if (r == null) return ResponseEntity.notFound().build();
+            long took = System.currentTimeMillis() - start;
+            if (meterRegistry != null) meterRegistry.timer("autocomplete.session.latency").record(took, java.util.concurrent.TimeUnit.MILLISECONDS);
+            String prefix = (q == null) ? "" : q.trim();
+            AutocompleteController.SuggestResponse body = new AutocompleteController.SuggestResponse(
+                    prefix, r.suggestions, new AutocompleteController.Meta(false, "v1", took), r.didYouMean);
+            if (permit.level != LoadShedder.Level.FULL) {
+                return ResponseEntity.ok().header("X-Degraded", permit.level.name()).body(body);
+            }
+            return ResponseEntity.ok(body);
+        }
+    }
+
+    @DeleteMapping("/{token}")
+    public ResponseEntity<Void> close(@PathVariable("token") String token) {
+        sessionService.close(token);
+        return ResponseEntity.ok().build();
+    }
+}
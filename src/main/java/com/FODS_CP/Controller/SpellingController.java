@@ -1,28 +1,89 @@
 package com.FODS_CP.Controller;
 
+import com.FODS_CP.data.DictionaryRegistry;
 import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.NamedDictionary;
+import com.FODS_CP.service.DocumentSpellChecker;
+import com.FODS_CP.service.LoadShedder;
 import com.FODS_CP.service.Suggestion;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 @RestController
 @RequestMapping("/api")
 public class SpellingController {
 
     private final FrequencyAwareTrie trie;
+    private final LoadShedder loadShedder;
+    private final DocumentSpellChecker documentSpellChecker;
+    private final DictionaryRegistry dictionaries;
+    // bulkhead for document checks: they run for seconds, so they stay out of the
+    // load shedder, whose limit and latency samples are tuned for /api/suggest
+    private final Semaphore documentSlots;
 
     @Autowired
-    public SpellingController(FrequencyAwareTrie trie) {
+    public SpellingController(FrequencyAwareTrie trie, LoadShedder loadShedder,
+                              DocumentSpellChecker documentSpellChecker, DictionaryRegistry dictionaries,
+                              @Value("${autocomplete.spellcheck.max-concurrent:2}") int maxConcurrent) {
         this.trie = trie;
+        this.loadShedder = loadShedder;
+        this.documentSpellChecker = documentSpellChecker;
+        this.dictionaries = dictionaries;
+        this.documentSlots = new Semaphore(Math.max(1, maxConcurrent));
     }
 
     @GetMapping("/spellcheck")
     public ResponseEntity<List<Suggestion>> spellcheck(@RequestParam("word") String word) {
         if (word == null || word.isBlank()) return ResponseEntity.badRequest().build();
-        List<Suggestion> fuzzy = trie.getNearbyByFuzzy(word, 5);
-        return ResponseEntity.ok(fuzzy);
+        try (LoadShedder.Permit permit = loadShedder.tryAcquire("spellcheck")) {
+            // spellcheck is nothing but fuzzy matching, the first thing we drop under load
+            if (permit == null || !permit.allowsCorrections()) return ResponseEntity.status(503).header("Retry-After", "1").build();
+            List<Suggestion> fuzzy = trie.getNearbyByFuzzy(word, 5);
+            return ResponseEntity.ok(fuzzy);
+        }
+    }
+
+    /**
+     * Whole-document spellcheck: POST the text as text/plain (any size up to
+     * autocomplete.spellcheck.max-bytes), get back every unknown token with its
+     * offsets, best correction and alternatives, plus throughput stats. At most
+     * autocomplete.spellcheck.max-concurrent run at once; the rest get 503. A
+     * charset this JVM cannot decode gets 415.
+     */
+    @PostMapping(value = "/spellcheck/document", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<DocumentSpellChecker.Result> spellcheckDocument(
+            @RequestParam(value = "dict", required = false) String dict,
+            HttpServletRequest request) throws IOException {
+        NamedDictionary dictionary = null;
+        if (dict != null && !dict.isBlank()) {
+            dictionary = dictionaries.get(dict);
+            if (dictionary == null) return ResponseEntity.badRequest().build();
+        }
+        Charset charset = StandardCharsets.UTF_8;
+        if (request.getCharacterEncoding() != null) {
+            try {
+                charset = Charset.forName(request.getCharacterEncoding());
+            } catch (IllegalArgumentException e) { // illegal or unsupported charset name
+                return ResponseEntity.status(415).build();
+            }
+        }
+        if (!documentSlots.tryAcquire()) return ResponseEntity.status(503).header("Retry-After", "5").build();
+        try {
+            return ResponseEntity.ok(documentSpellChecker.check(request.getInputStream(), charset, dictionary));
+        } catch (DocumentSpellChecker.TooLargeException e) {
+            return ResponseEntity.status(413).build();
+        } finally {
+            documentSlots.release();
+        }
     }
 }
@@ -0,0 +1,239 @@
+package com.FODS_CP.Controller;
+
+import com.FODS_CP.data.DictionaryRegistry;
+import com.FODS_CP.data.NamedDictionary;
+import com.FODS_CP.service.CategoryService;
+import com.FODS_CP.service.LoadShedder;
+import com.FODS_CP.service.SuggestPipeline;
+import com.FODS_CP.service.Suggestion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Progressive suggest over Server-Sent Events.
+ *
+ * GET /api/suggest/stream?q=..&context=..&limit=..&userId=..&category=..&dict=..&client=..
+ * emits one event per pipeline stage as soon as it is ready:
+ *   completions -> ranked -> corrections -> done
+ * (a cache hit emits a single "corrections" event followed by "done"; under load
+ * the later stages are skipped, and a shed request gets a single "shed" event).
+ *
+ * When a client passes a stable "client" id, a new query from that client
+ * cancels the one still running for it, so superseded keystrokes stop doing work.
+ * Cancelling never interrupts the worker (it may be in the middle of writing an
+ * event); the worker checks the flag between stages and ends the stream cleanly.
+ */
+@RestController
+@RequestMapping("/api")
+public class SuggestStreamController {
+
+    private static final long EMITTER_TIMEOUT_MS = 10_000;
+
+    private final SuggestPipeline pipeline;
+    private final Cache<String, Object> suggestionCache;
+    private final MeterRegistry meterRegistry;
+    private final LoadShedder loadShedder;
+    private final CategoryService categoryService;
+    private final ObjectMapper objectMapper;
+    private final DictionaryRegistry dictionaries;
+
+    // client id -> in-flight stream for that client
+    private final Map<String, StreamTask> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            r -> { Thread t = new Thread(r, "suggest-stream"); t.setDaemon(true); return t; });
+
+    @Autowired
+    public SuggestStreamController(SuggestPipeline pipeline,
+                                   Cache<String, Object> suggestionCache,
+                                   MeterRegistry meterRegistry,
+                                   LoadShedder loadShedder,
+                                   CategoryService categoryService,
+                                   ObjectMapper objectMapper,
+                                   DictionaryRegistry dictionaries) {
+        this.pipeline = pipeline;
+        this.suggestionCache = suggestionCache;
+        this.meterRegistry = meterRegistry;
+        this.loadShedder = loadShedder;
+        this.categoryService = categoryService;
+        this.objectMapper = objectMapper;
+        this.dictionaries = dictionaries;
+    }
+
+    private static class StreamTask {
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        // whoever flips this first owns the permit: the worker when it starts, cancel() if it never did
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        final LoadShedder.Permit permit;
+        volatile Future<?> future;
+
+        StreamTask(LoadShedder.Permit permit) { this.permit = permit; }
+
+        boolean claim() { return claimed.compareAndSet(false, true); }
+
+        // a queued task never starts; a running one stops at its next stage boundary
+        void cancel() {
+            cancelled.set(true);
+            Future<?> f = future;
+            if (f != null) f.cancel(false);
+            if (claim() && permit != null) permit.close(); // cancelled while still queued
+        }
+    }
+
+    @GetMapping(value = "/suggest/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "context", required = false) String context,
+            @RequestParam(value = "limit", defaultValue = "6") int limit,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "dict", required = false) String dict,
+            @RequestParam(value = "client", required = false) String client
+    ) {
+        long start = System.currentTimeMillis();
+        int categoryId = -1;
+        if (category != null && !category.isBlank()) {
+            categoryId = categoryService.idOf(category);
+            if (categoryId < 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown category");
+        }
+        NamedDictionary dictionary = null;
+        if (dict != null && !dict.isBlank()) {
+            dictionary = dictionaries.get(dict);
+            if (dictionary == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown dictionary");
+            if (categoryId >= 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "category is not supported with dict");
+        }
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        SuggestPipeline.Run run = pipeline.newRun(q, context, limit, userId, categoryId, dictionary);
+        Cache<String, Object> cache = run.dictionary == null ? suggestionCache : run.dictionary.cache();
+
+        // hits are answered right here; misses take their permit before queuing, so streams
+        // waiting for a worker count against the limit and the queue can never outgrow it
+        if (cache.getIfPresent(run.cacheKey()) instanceof CachedResponse cached) {
+            countRequest(run, "cache-hit");
+            try {
+                send(emitter, null, "corrections", run.prefix, cached.suggestions, cached.didYouMean, true, start);
+                send(emitter, null, "done", run.prefix, null, null, true, start);
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+        countRequest(run, "cache-miss");
+        LoadShedder.Permit permit = loadShedder.tryAcquire("stream");
+        if (permit == null) {
+            try {
+                emitter.send(SseEmitter.event().name("shed").data("overloaded").reconnectTime(1000));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+        StreamTask task = new StreamTask(permit);
+
+        if (client != null && !client.isBlank()) {
+            StreamTask previous = inFlight.put(client, task);
+            if (previous != null) {
+                previous.cancel();
+                if (meterRegistry != null) meterRegistry.counter("autocomplete.stream.cancelled").increment();
+            }
+        }
+        Runnable release = () -> {
+            task.cancel();
+            if (client != null) inFlight.remove(client, task);
+        };
+        emitter.onCompletion(release);
+        emitter.onTimeout(release);
+        emitter.onError(e -> release.run());
+
+        try {
+            task.future = executor.submit(() -> {
+                if (!task.claim()) return; // superseded while queued, the permit is already back
+                try (LoadShedder.Permit p = task.permit) {
+                    runStages(run, task, p, cache, emitter, start);
+                    emitter.complete();
+                } catch (CancellationException e) {
+                    emitter.complete();
+                } catch (Throwable t) {
+                    // a send racing the supersede (client gone, emitter completed) is not an error
+                    if (task.cancelled.get()) emitter.complete();
+                    else emitter.completeWithError(t);
+                } finally {
+                    if (client != null) inFlight.remove(client, task);
+                }
+            });
+        } catch (RejectedExecutionException e) { // shutting down
+            release.run();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "shutting down");
+        }
+        return emitter;
+    }
+
+    private void runStages(SuggestPipeline.Run run, StreamTask task, LoadShedder.Permit permit, Cache<String, Object> cache,
+                           SseEmitter emitter, long start) throws Exception {
+        String cacheKey = run.cacheKey();
+        if (run.prefix.isEmpty()) {
+            List<Suggestion> top = pipeline.nextWords(run);
+            cache.put(cacheKey, CachedResponse.encode(objectMapper, top, null));
+            send(emitter, task, "corrections", run.prefix, top, null, false, start);
+            send(emitter, task, "done", run.prefix, null, null, false, start);
+            return;
+        }
+
+        checkCancelled(task);
+        send(emitter, task, "completions", run.prefix, pipeline.completions(run), null, false, start);
+        if (permit.allowsRanking()) {
+            checkCancelled(task);
+            send(emitter, task, "ranked", run.prefix, pipeline.ranked(run), null, false, start);
+        }
+        if (permit.allowsCorrections()) {
+            checkCancelled(task);
+            List<Suggestion> out = pipeline.corrections(run);
+            checkCancelled(task);
+            String didYouMean = pipeline.didYouMean(run);
+            cache.put(cacheKey, CachedResponse.encode(objectMapper, out, didYouMean));
+            send(emitter, task, "corrections", run.prefix, out, didYouMean, false, start);
+        }
+        send(emitter, task, "done", run.prefix, null, null, false, start);
+        if (meterRegistry != null) meterRegistry.timer("autocomplete.stream.latency").record(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+    }
+
+    private void countRequest(SuggestPipeline.Run run, String result) {
+        if (meterRegistry == null) return;
+        if (run.dictionary == null) meterRegistry.counter("autocomplete.requests", "result", result).increment();
+        else meterRegistry.counter("autocomplete.dict.requests", "dict", run.dictionary.name, "result", result).increment();
+    }
+
+    private void send(SseEmitter emitter, StreamTask task, String stage, String prefix, List<Suggestion> suggestions,
+                      String didYouMean, boolean fromCache, long start) throws Exception {
+        checkCancelled(task);
+        long took = System.currentTimeMillis() - start;
+        AutocompleteController.SuggestResponse body = new AutocompleteController.SuggestResponse(
+                prefix, suggestions, new AutocompleteController.Meta(fromCache, "v1", took), didYouMean);
+        emitter.send(SseEmitter.event().name(stage).data(body, MediaType.APPLICATION_JSON));
+    }
+
+    private void checkCancelled(StreamTask task) {
+        if (task == null) return;
+        if (task.cancelled.get()) throw new CancellationException();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -10,7 +10,8 @@ import com.github.benmanes.caffeine.cache.Cache;
 @Configuration
 public class CacheConfig {
 
-    // caches prefix -> serialized result (you store Suggestion list)
+    // caches normalized query -> Controller.CachedResponse (final list + its pre-encoded body);
+    // entries put by StartupWarmup expire like any other, 10 minutes after the warm-up
     @Bean("suggestionCache")
     public Cache<String, Object> suggestionCache() {
         return Caffeine.newBuilder()
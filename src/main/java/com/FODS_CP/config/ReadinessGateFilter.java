@@ -0,0 +1,56 @@
+package com.FODS_CP.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * The embedded server listens before the dictionary is loaded and warmed up
+ * (runners execute after it starts). Until readiness is ACCEPTING_TRAFFIC,
+ * requests that read the trie (/api/** and the legacy /autocomplete) get 503 +
+ * Retry-After instead of an empty or cold trie. Actuator probes and the static
+ * page are never gated.
+ */
+@Component
+public class ReadinessGateFilter extends OncePerRequestFilter {
+
+    private final ApplicationAvailability availability;
+    private final boolean enabled;
+
+    public ReadinessGateFilter(ApplicationAvailability availability,
+                               @Value("${autocomplete.warmup.gate-traffic:true}") boolean enabled) {
+        this.availability = availability;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) return true;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(under(path, "/api") || under(path, "/autocomplete"));
+    }
+
+    // the path itself or anything below it, but not "/apiX"
+    private static boolean under(String path, String root) {
+        return path.startsWith(root) && (path.length() == root.length() || path.charAt(root.length()) == '/');
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (availability.getReadinessState() != ReadinessState.ACCEPTING_TRAFFIC) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
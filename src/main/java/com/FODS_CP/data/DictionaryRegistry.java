@@ -0,0 +1,224 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.TextNormalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Named dictionaries selectable per request (?dict=de, ?dict=acme), next to the
+ * default trie which keeps serving requests without a dict.
+ *
+ * Sources are configured as name=location pairs:
+ *   autocomplete.dictionaries.sources=de=classpath:dict/de.csv,acme=file:/srv/acme.csv
+ * (same CSV layout as word_frequencies.csv). A dictionary is read on its first
+ * request and dropped after idle-minutes without one.
+ *
+ * All loaded dictionaries share one SharedLexicon holding the union of their
+ * words; each dictionary only adds its own word numbers, counts and the
+ * spellings that differ from their normalized keys. The lexicon
+ * is rebuilt whenever a dictionary is loaded or evicted (both rare). Reading the
+ * CSV and building the new automaton happen without any lock, so a slow load
+ * does not hold up the first request of another dictionary; only the swap
+ * (re-indexing the int arrays of the live dictionaries) is synchronized, and a
+ * build that lost a race with another swap is redone on the newer lexicon.
+ */
+@Service
+public class DictionaryRegistry {
+
+    private final TextNormalizer normalizer;
+    private final ResourceLoader resourceLoader;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, String> sources = new LinkedHashMap<>();
+    private final Cache<String, NamedDictionary> loaded;
+    private final int cacheSize;
+    private volatile SharedLexicon lexicon = SharedLexicon.EMPTY;
+    // guarded by this: dictionaries indexed on lexicon, and a counter bumped on each swap
+    private final List<NamedDictionary> live = new ArrayList<>();
+    private long version;
+
+    @Autowired
+    public DictionaryRegistry(TextNormalizer normalizer, ResourceLoader resourceLoader, MeterRegistry meterRegistry,
+                              @Value("${autocomplete.dictionaries.sources:}") String sources,
+                              @Value("${autocomplete.dictionaries.idle-minutes:30}") long idleMinutes,
+                              @Value("${autocomplete.dictionaries.max-loaded:16}") int maxLoaded,
+                              @Value("${autocomplete.dictionaries.cache-size:10000}") int cacheSize) {
+        this.normalizer = normalizer;
+        this.resourceLoader = resourceLoader;
+        this.meterRegistry = meterRegistry;
+        this.cacheSize = Math.max(1, cacheSize);
+        for (String pair : sources.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            this.sources.put(pair.substring(0, eq).strip().toLowerCase(Locale.ROOT), pair.substring(eq + 1).strip());
+        }
+        this.loaded = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxLoaded))
+                .expireAfterAccess(Duration.ofMinutes(Math.max(1, idleMinutes)))
+                .scheduler(Scheduler.systemScheduler()) // evict idle ones even when no request comes
+                .removalListener((String name, NamedDictionary d, RemovalCause cause) -> {
+                    if (!cause.wasEvicted()) return;
+                    System.out.println("[Dictionaries] evicted '" + name + "' (" + cause + ")");
+                    if (meterRegistry != null) meterRegistry.counter("autocomplete.dict.evictions", "dict", name).increment();
+                    compact(d);
+                })
+                .build();
+        if (meterRegistry != null) {
+            Gauge.builder("autocomplete.dict.loaded", loaded, Cache::estimatedSize).register(meterRegistry);
+            Gauge.builder("autocomplete.dict.shared.words", this, r -> r.lexicon.size()).register(meterRegistry);
+            Gauge.builder("autocomplete.dict.shared.bytes", this, r -> r.lexicon.bytes()).register(meterRegistry);
+        }
+        if (!this.sources.isEmpty()) System.out.println("[Dictionaries] configured: " + this.sources.keySet());
+    }
+
+    /** The named dictionary, loading it on first use; null when no such dictionary is configured. */
+    public NamedDictionary get(String name) {
+        if (name == null) return null;
+        String n = name.strip().toLowerCase(Locale.ROOT);
+        if (!sources.containsKey(n)) return null;
+        return loaded.get(n, this::load);
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(sources.keySet());
+    }
+
+    /** Sizes for /api/dictionaries: what is loaded, and what the shared layer saves. */
+    public Map<String, Object> stats() {
+        SharedLexicon lex = lexicon;
+        Map<String, Object> dicts = new TreeMap<>();
+        long separateWords = 0;
+        for (Map.Entry<String, NamedDictionary> e : loaded.asMap().entrySet()) {
+            NamedDictionary d = e.getValue();
+            separateWords += d.words();
+            dicts.put(e.getKey(), Map.of("words", d.words(), "bytes", d.bytes(), "cachedQueries", d.cache().estimatedSize()));
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("configured", sources.keySet());
+        out.put("loaded", dicts);
+        out.put("shared", Map.of("words", lex.size(), "states", lex.states(), "edges", lex.edges(), "bytes", lex.bytes(),
+                "wordsIfSeparate", separateWords));
+        return out;
+    }
+
+    private NamedDictionary load(String name) {
+        long start = System.currentTimeMillis();
+        Map<String, String> surface = new HashMap<>();
+        Map<String, Long> counts = read(sources.get(name), surface);
+        Cache<String, Object> cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+        while (true) {
+            Snapshot s = snapshot();
+            List<String> old = s.lexicon.words();
+            List<String> union = new ArrayList<>(old);
+            union.addAll(counts.keySet());
+            SharedLexicon next = SharedLexicon.build(union);
+            int[] moved = new int[old.size()];
+            for (int i = 0; i < moved.length; i++) moved[i] = next.indexOf(old.get(i));
+            NamedDictionary dict = new NamedDictionary(name, next, counts, surface, cache);
+            if (!swap(s, next, moved, dict)) continue;
+            long took = System.currentTimeMillis() - start;
+            System.out.println("[Dictionaries] loaded '" + name + "': " + counts.size() + " words in " + took
+                    + " ms; shared lexicon " + next.size() + " words / " + next.states() + " states");
+            if (meterRegistry != null) meterRegistry.counter("autocomplete.dict.loads", "dict", name).increment();
+            return dict;
+        }
+    }
+
+    // drop the words only the evicted dictionary used
+    private void compact(NamedDictionary evicted) {
+        synchronized (this) {
+            live.remove(evicted);
+        }
+        while (true) {
+            Snapshot s = snapshot();
+            boolean[] used = new boolean[s.lexicon.size()];
+            for (NamedDictionary d : s.dicts) d.markWords(used);
+            List<String> old = s.lexicon.words();
+            List<String> keep = new ArrayList<>();
+            int[] moved = new int[old.size()];
+            for (int i = 0; i < moved.length; i++) {
+                moved[i] = used[i] ? keep.size() : -1;
+                if (used[i]) keep.add(old.get(i));
+            }
+            if (swap(s, SharedLexicon.build(keep), moved, null)) return;
+        }
+    }
+
+    private static final class Snapshot {
+        final SharedLexicon lexicon;
+        final List<NamedDictionary> dicts;
+        final long version;
+
+        Snapshot(SharedLexicon lexicon, List<NamedDictionary> dicts, long version) {
+            this.lexicon = lexicon;
+            this.dicts = dicts;
+            this.version = version;
+        }
+    }
+
+    private synchronized Snapshot snapshot() {
+        return new Snapshot(lexicon, new ArrayList<>(live), version);
+    }
+
+    // false when another load or compaction swapped since the snapshot; the caller rebuilds on top of it
+    private synchronized boolean swap(Snapshot s, SharedLexicon next, int[] moved, NamedDictionary added) {
+        if (version != s.version) return false;
+        for (NamedDictionary d : live) d.remap(next, moved);
+        if (added != null) live.add(added);
+        lexicon = next;
+        version++;
+        return true;
+    }
+
+    // normalized key -> count, highest count wins when spellings collapse to one key; that
+    // spelling goes into surface when it differs from the key
+    private Map<String, Long> read(String location, Map<String, String> surface) {
+        Map<String, Long> counts = new HashMap<>();
+        Resource resource = resourceLoader.getResource(location);
+        CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
+                .setHeader("word", "frequency")
+                .setSkipHeaderRecord(true)
+                .build();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8));
+             CSVParser csvParser = new CSVParser(reader, csvFormat)) {
+            for (CSVRecord csvRecord : csvParser) {
+                String word = csvRecord.get("word").strip();
+                String key = normalizer.normalize(word);
+                if (key.isEmpty()) continue;
+                try {
+                    long count = Long.parseLong(csvRecord.get("frequency").strip());
+                    Long had = counts.get(key);
+                    if (had != null && had >= count) continue;
+                    counts.put(key, count);
+                    if (word.equals(key)) surface.remove(key); else surface.put(key, word);
+                } catch (NumberFormatException e) {
+                    System.err.println("[Dictionaries] bad frequency for: " + csvRecord.get("word"));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load dictionary from " + location, e);
+        }
+        return counts;
+    }
+}
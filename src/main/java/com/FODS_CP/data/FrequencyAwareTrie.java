@@ -1,132 +1,668 @@
 package com.FODS_CP.data;
 
+import com.FODS_CP.service.CategoryService;
 import com.FODS_CP.service.Suggestion;
 import com.FODS_CP.service.Fuzzy;
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import com.FODS_CP.service.TextNormalizer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Service
 public class FrequencyAwareTrie {
 
+    // children are keyed by code points of the normalized word (see TextNormalizer)
     private static class Node {
-        Map<Character, Node> children = new HashMap<>();
+        Map<Integer, Node> children = new HashMap<>();
         boolean end = false;
         long freq = 0L;
+        long maxFreq = 0L; // highest freq of any word in this subtree, used to prune searches
+        String word; // surface form shown to users, set on end nodes
+        int category; // CategoryService id, set on end nodes
+        long base; // static count from the dictionary CSV, never decays; end nodes only
+        long maxBase; // highest base in this subtree
+        // decayed learned usage in the log domain, see logWeight(); end nodes only
+        double logScore = Double.NEGATIVE_INFINITY;
+        double maxLogScore = Double.NEGATIVE_INFINITY; // highest logScore in this subtree
+        long lastTouched; // epoch millis of the last accept, 0 = never
+        long catMask; // categories of the words in this subtree, one bit each (see catBit)
     }
 
     private final Node root = new Node();
+    // words per category id, so categoryIds() does not need a walk
+    private final Map<Integer, Integer> categorySizes = new HashMap<>();
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final LevenshteinDistance levenshtein = new LevenshteinDistance(5);
+    // every normalized key in the trie, for lock-free O(1) membership checks (words are never removed)
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    // bumped by every write, so callers holding results of earlier reads can tell they are stale
+    private volatile long version;
+    public static final int MAX_FUZZY_DISTANCE = 5;
+    // cost of one edit in fuzzy ranking: more than ln of any count, so the nearest
+    // word always wins and frequency only breaks ties between equal distances
+    public static final double DISTANCE_WEIGHT = 64.0;
+    // fixed landmark for decay so stored scores stay comparable across restarts (2023-11-14)
+    private static final long DECAY_EPOCH_MILLIS = 1_700_000_000_000L;
 
-    public FrequencyAwareTrie() {}
+    private final TextNormalizer normalizer;
+    private final CategoryService categories;
+    private final double decayPerMilli; // lambda = ln 2 / half-life
+
+    public FrequencyAwareTrie(TextNormalizer normalizer, CategoryService categories,
+                              @Value("${autocomplete.decay.half-life-hours:168}") double halfLifeHours) {
+        this.normalizer = normalizer;
+        this.categories = categories;
+        this.decayPerMilli = Math.log(2) / (Math.max(1e-3, halfLifeHours) * 3_600_000.0);
+    }
+
+    public TextNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /** Changes whenever a word is inserted or its counts change. */
+    public long version() {
+        return version;
+    }
+
+    /*
+     * Decay without a sweep: a use of weight w at time t is stored as
+     * ln(w) + lambda * (t - epoch). The decayed total at time now is
+     * exp(logScore - lambda * (now - epoch)), and because the subtracted term is
+     * the same for every word, ordering by logScore is ordering by current
+     * decayed score. Nothing is ever rescaled and subtree maxima stay valid.
+     *
+     * Only learned usage decays. Static counts from the dictionary are a separate
+     * base term (Node.base), so a word's rank is base + decayed usage and does not
+     * depend on how long the process has been up. In the stored domain that is
+     * logAddExp(ln(base) + lambda * (now - epoch), logScore); see rankScore().
+     */
+    public double logWeight(double weight, long epochMillis) {
+        return Math.log(weight) + decayPerMilli * (epochMillis - DECAY_EPOCH_MILLIS);
+    }
+
+    public static double logAddExp(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) return b;
+        if (b == Double.NEGATIVE_INFINITY) return a;
+        double hi = Math.max(a, b);
+        return hi + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+
+    // base + decayed usage as of `shift` = lambda * (now - epoch), in the stored log domain
+    private static double rankScore(long base, double logScore, double shift) {
+        return logAddExp(base > 0 ? Math.log(base) + shift : Double.NEGATIVE_INFINITY, logScore);
+    }
+
+    private double shiftAt(long now) {
+        return decayPerMilli * (now - DECAY_EPOCH_MILLIS);
+    }
+
+    /** Decayed usage count of a stored log score as of `now`. */
+    public double decayed(double logScore, long now) {
+        return Math.exp(logScore - decayPerMilli * (now - DECAY_EPOCH_MILLIS));
+    }
 
     public void insert(String word, long frequency) {
-        if (word == null || word.isEmpty()) return;
+        insert(word, frequency, null);
+    }
+
+    /** Insert with an explicit category name; null classifies a new word by keyword. */
+    public void insert(String word, long frequency, String category) {
+        if (word == null) return;
+        String key = normalizer.normalize(word);
+        if (key.isEmpty()) return;
         lock.writeLock().lock();
         try {
-            Node cur = root;
-            for (char ch : word.toCharArray()) {
-                cur = cur.children.computeIfAbsent(ch, k -> new Node());
-            }
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node cur = walkCreate(root, key, path);
+            boolean fresh = cur.word == null;
             cur.end = true;
             cur.freq = Math.max(cur.freq, frequency); // keep higher frequency
+            cur.base = Math.max(cur.base, Math.max(1, frequency));
+            if (fresh || category != null) {
+                // first insert decides the category, the keyword scan runs once per word
+                int cat = category != null ? categories.register(category) : categories.categoryOf(key);
+                if (fresh) categorySizes.merge(cat, 1, Integer::sum);
+                else if (cat != cur.category) moveCategory(cur.category, cat);
+                cur.category = cat;
+            }
+            if (fresh) cur.word = word.strip();
+            raise(path, cur);
+            keys.add(key);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * An accepted suggestion: bumps the raw count and folds one use at `now` into
+     * the decayed score, O(word length). Unknown words are added.
+     */
+    public void recordUse(String word, long count, long now) {
+        applyLearned(word, count, logWeight(count, now), now);
+    }
+
+    /**
+     * Fold learned usage into a word: `count` raw uses whose decayed weight is
+     * `logScore` (see logWeight), last one at `lastTouched`. Used by recordUse and
+     * when replaying learned updates after a restart.
+     */
+    public void applyLearned(String word, long count, double logScore, long lastTouched) {
+        if (word == null || count <= 0) return;
+        String key = normalizer.normalize(word);
+        if (key.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node cur = walkCreate(root, key, path);
+            if (cur.word == null) {
+                cur.word = word.strip();
+                cur.category = categories.categoryOf(key);
+                categorySizes.merge(cur.category, 1, Integer::sum);
+            }
+            cur.end = true;
+            cur.freq += count;
+            cur.logScore = logAddExp(cur.logScore, logScore);
+            cur.lastTouched = Math.max(cur.lastTouched, lastTouched);
+            raise(path, cur);
+            keys.add(key);
+            version++;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    private static Node walkCreate(Node from, String key, List<Node> path) {
+        Node cur = from;
+        path.add(cur);
+        for (int i = 0; i < key.length(); ) {
+            int cp = key.codePointAt(i);
+            cur = cur.children.computeIfAbsent(cp, k -> new Node());
+            path.add(cur);
+            i += Character.charCount(cp);
+        }
+        return cur;
+    }
+
+    // scores only grow, so subtree maxima can be raised along the path
+    private static void raise(List<Node> path, Node end) {
+        long bit = catBit(end.category);
+        for (Node n : path) {
+            n.maxFreq = Math.max(n.maxFreq, end.freq);
+            n.maxBase = Math.max(n.maxBase, end.base);
+            n.maxLogScore = Math.max(n.maxLogScore, end.logScore);
+            n.catMask |= bit;
+        }
+    }
+
+    // ids past 62 share the top bit; the mask only has to say "maybe here", end nodes are checked exactly
+    private static long catBit(int category) {
+        return 1L << Math.min(Math.max(category, 0), 63);
+    }
+
+    // could this subtree hold a word of the category (-1 for all)
+    private static boolean mayHold(Node n, int category) {
+        return category < 0 || (n.catMask & catBit(category)) != 0;
+    }
+
+    private static boolean inCategory(Node n, int category) {
+        return n.end && (category < 0 || n.category == category);
+    }
+
+    // only when an explicit category replaces an earlier one; the old bit may stay set on the path, which is safe
+    private void moveCategory(int from, int to) {
+        if (categorySizes.merge(from, -1, Integer::sum) <= 0) categorySizes.remove(from);
+        categorySizes.merge(to, 1, Integer::sum);
+    }
+
+    /** Category id of a word, or -1 when the word is not in the trie. */
+    public int categoryOf(String key) {
+        lock.readLock().lock();
+        try {
+            Node n = findNode(root, key);
+            return n != null && n.end ? n.category : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Category ids that have at least one word. */
+    public Set<Integer> categoryIds() {
+        lock.readLock().lock();
+        try {
+            return new TreeSet<>(categorySizes.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public CategoryService getCategories() {
+        return categories;
+    }
+
     public List<Suggestion> getSuggestions(String prefix, int limit) {
-        if (prefix == null) prefix = "";
+        return getSuggestionsForKey(normalizer.normalize(prefix), limit);
+    }
+
+    /** getSuggestions for a prefix that has already been through the normalizer. */
+    public List<Suggestion> getSuggestionsForKey(String key, int limit) {
+        return getSuggestionsForKey(key, limit, -1);
+    }
+
+    /** Completions within one category (-1 for all); subtrees without the category are skipped by mask. */
+    public List<Suggestion> getSuggestionsForKey(String key, int limit, int category) {
+        if (key == null) key = "";
         if (limit <= 0) limit = 10;
         lock.readLock().lock();
         try {
-            Node node = findNode(prefix);
+            Node node = findNode(root, key);
             if (node == null) return Collections.emptyList();
-            PriorityQueue<Suggestion> pq = new PriorityQueue<>(Comparator.comparingLong(Suggestion::getFrequency));
-            collect(node, prefix, pq, limit);
-            List<Suggestion> out = new ArrayList<>();
-            while (!pq.isEmpty()) out.add(pq.poll());
-            Collections.reverse(out);
-            return out;
+            return topK(node, limit, category);
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    private static final class Ranked {
+        final Node node;
+        final double score;
+        Ranked(Node node, double score) { this.node = node; this.score = score; }
+    }
+
+    // top-k words of a category (-1 for all) under node by base + decayed usage, best first
+    private List<Suggestion> topK(Node node, int limit, int category) {
+        PriorityQueue<Ranked> pq = new PriorityQueue<>(Comparator.comparingDouble((Ranked r) -> r.score));
+        double shift = shiftAt(System.currentTimeMillis());
+        collect(node, pq, limit, category, shift);
+        List<Suggestion> out = new ArrayList<>(pq.size());
+        while (!pq.isEmpty()) out.add(suggestion(pq.poll(), shift));
+        Collections.reverse(out);
+        return out;
+    }
+
     // helper collect into min-heap
-    private void collect(Node node, String curPrefix, PriorityQueue<Suggestion> pq, int limit) {
-        if (node == null) return;
-        if (node.end) {
-            Suggestion s = new Suggestion(curPrefix, node.freq);
-            if (pq.size() < limit) pq.offer(s);
-            else if (s.getFrequency() > pq.peek().getFrequency()) {
+    private void collect(Node node, PriorityQueue<Ranked> pq, int limit, int category, double shift) {
+        if (node == null || !mayHold(node, category)) return;
+        if (inCategory(node, category)) {
+            double score = rankScore(node.base, node.logScore, shift);
+            if (pq.size() < limit) pq.offer(new Ranked(node, score));
+            else if (score > pq.peek().score) {
                 pq.poll();
-                pq.offer(s);
+                pq.offer(new Ranked(node, score));
             }
         }
-        for (Map.Entry<Character, Node> e : node.children.entrySet()) {
-            collect(e.getValue(), curPrefix + e.getKey(), pq, limit);
+        for (Node child : node.children.values()) {
+            // nothing below can beat the current top-k (both maxima together bound any one word)
+            if (pq.size() >= limit && rankScore(child.maxBase, child.maxLogScore, shift) <= pq.peek().score) continue;
+            collect(child, pq, limit, category, shift);
         }
     }
 
-    private Node findNode(String prefix) {
-        Node cur = root;
-        for (char ch : prefix.toCharArray()) {
-            if (cur == null) return null;
-            cur = cur.children.get(ch);
+    private Suggestion suggestion(Ranked r, double shift) {
+        Node node = r.node;
+        Suggestion s = new Suggestion(node.word, node.freq);
+        s.setLogRank(r.score - shift); // back out of the stored domain: ln(base + decayed usage now)
+        s.setCategory(categories.name(node.category));
+        s.setLastUsedEpochMillis(node.lastTouched);
+        return s;
+    }
+
+    /**
+     * Opaque handle on a trie position so a caller can resume a walk
+     * (e.g. one keystroke later) instead of starting again from the root.
+     */
+    public static final class Position {
+        private final Node node;
+        private Position(Node node) { this.node = node; }
+    }
+
+    public Position rootPosition() {
+        return new Position(root);
+    }
+
+    /** Step one code point down from a position; null when no word continues that way. */
+    public Position advance(Position from, int codePoint) {
+        if (from == null) return null;
+        lock.readLock().lock();
+        try {
+            Node next = from.node.children.get(codePoint);
+            return next == null ? null : new Position(next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Same as getSuggestions(prefix, limit) but starting from an already resolved position. */
+    public List<Suggestion> getSuggestions(Position at, int limit) {
+        if (at == null) return Collections.emptyList();
+        if (limit <= 0) limit = 10;
+        lock.readLock().lock();
+        try {
+            return topK(at.node, limit, -1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Node findNode(Node from, String key) {
+        Node cur = from;
+        if (cur == null) return null;
+        for (int i = 0; i < key.length(); ) {
+            int cp = key.codePointAt(i);
+            cur = cur.children.get(cp);
             if (cur == null) return null;
+            i += Character.charCount(cp);
         }
         return cur;
     }
 
+    public boolean contains(String word) {
+        return containsKey(normalizer.normalize(word));
+    }
+
+    /** Membership of an already normalized key: one hash lookup, no lock. */
+    public boolean containsKey(String key) {
+        return keys.contains(key);
+    }
+
+    /** A fuzzy hit with the edit distance it was ranked by, so callers need not recompute it. */
+    public static final class FuzzyMatch {
+        public final String word;
+        public final String key;
+        public final long freq;
+        public final int distance;
+        public final double score;
+
+        public FuzzyMatch(String word, String key, long freq, int distance) {
+            this.word = word; this.key = key; this.freq = freq; this.distance = distance;
+            this.score = fuzzyScore(freq, distance);
+        }
+    }
+
+    /** Combined ranking for fuzzy hits: fewer edits first, then log frequency. */
+    public static double fuzzyScore(long freq, int distance) {
+        return Math.log(freq + 1) - DISTANCE_WEIGHT * distance;
+    }
+
+    /** Edit budget for a query of the given length: short queries get fewer edits. */
+    public static int maxDistanceFor(int queryLength) {
+        return Math.min(MAX_FUZZY_DISTANCE, 1 + queryLength / 3);
+    }
+
     /**
      * Fuzzy search over vocabulary using Levenshtein (bounded distance).
-     * Returns suggestions ordered by frequency desc.
+     * Returns suggestions ordered by combined distance + frequency score.
      */
     public List<Suggestion> getNearbyByFuzzy(String token, int limit) {
-        if (token == null || token.isEmpty()) return Collections.emptyList();
-        token = token.toLowerCase();
-        // collect vocabulary snapshot
-        Map<String, Long> vocab = getVocabulary();
-        List<Suggestion> matches = new ArrayList<>();
-        for (Map.Entry<String, Long> e : vocab.entrySet()) {
-            String w = e.getKey();
-            int d = levenshtein.apply(w, token);
-            if (d != -1) {
-                matches.add(new Suggestion(w, e.getValue()));
+        List<Suggestion> out = new ArrayList<>();
+        for (FuzzyMatch m : fuzzyTopK(token, limit)) out.add(new Suggestion(m.word, m.freq));
+        return out;
+    }
+
+    /**
+     * Top-k words by fuzzyScore within maxDistanceFor(query) edits, in one walk of the trie.
+     * Each node carries one Levenshtein row against the query; a subtree is skipped as soon
+     * as its row minimum exceeds the edit budget or, once k hits are held, when even its
+     * most frequent word at that minimum distance could not enter the top-k. The budget
+     * therefore tightens as the heap fills.
+     */
+    public List<FuzzyMatch> fuzzyTopK(String token, int k) {
+        return fuzzyTopK(token, k, -1);
+    }
+
+    /** fuzzyTopK restricted to one category (-1 for all). */
+    public List<FuzzyMatch> fuzzyTopK(String token, int k, int category) {
+        if (token == null || k <= 0) return Collections.emptyList();
+        String key = normalizer.normalize(token);
+        if (key.isEmpty()) return Collections.emptyList();
+        int[] q = TextNormalizer.codePoints(key);
+        int maxDist = maxDistanceFor(q.length);
+        int[] row0 = new int[q.length + 1];
+        for (int i = 0; i < row0.length; i++) row0[i] = i;
+
+        PriorityQueue<FuzzyMatch> heap = new PriorityQueue<>(Comparator.comparingDouble((FuzzyMatch m) -> m.score));
+        lock.readLock().lock();
+        try {
+            StringBuilder path = new StringBuilder();
+            for (Map.Entry<Integer, Node> e : root.children.entrySet()) {
+                fuzzyWalk(e.getValue(), e.getKey(), row0, q, maxDist, k, category, heap, path);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<FuzzyMatch> out = new ArrayList<>(heap);
+        out.sort(Comparator.comparingDouble((FuzzyMatch m) -> m.score).reversed());
+        return out;
+    }
+
+    private void fuzzyWalk(Node node, int cp, int[] prev, int[] q, int maxDist, int k, int category,
+                           PriorityQueue<FuzzyMatch> heap, StringBuilder path) {
+        if (!mayHold(node, category)) return;
+        int[] row = new int[prev.length];
+        row[0] = prev[0] + 1;
+        int rowMin = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int cost = q[i - 1] == cp ? 0 : 1;
+            row[i] = Math.min(Math.min(row[i - 1] + 1, prev[i] + 1), prev[i - 1] + cost);
+            if (row[i] < rowMin) rowMin = row[i];
+        }
+        if (rowMin > maxDist) return;
+        if (heap.size() >= k && fuzzyScore(node.maxFreq, rowMin) <= heap.peek().score) return;
+
+        int len = path.length();
+        path.appendCodePoint(cp);
+        int d = row[row.length - 1];
+        if (inCategory(node, category) && d <= maxDist) {
+            double score = fuzzyScore(node.freq, d);
+            if (heap.size() < k) heap.offer(new FuzzyMatch(node.word, path.toString(), node.freq, d));
+            else if (score > heap.peek().score) {
+                heap.poll();
+                heap.offer(new FuzzyMatch(node.word, path.toString(), node.freq, d));
             }
         }
-        matches.sort(Comparator.comparingLong(Suggestion::getFrequency).reversed());
-        return matches.size() > limit ? matches.subList(0, limit) : matches;
+        for (Map.Entry<Integer, Node> e : node.children.entrySet()) {
+            fuzzyWalk(e.getValue(), e.getKey(), row, q, maxDist, k, category, heap, path);
+        }
+        path.setLength(len);
     }
 
     /**
-     * Try to return a best correction for token from vocabulary using Fuzzy.similarity.
+     * Every trie node whose path is within maxDistanceFor(query) edits of a query,
+     * with that exact edit distance. Words within the budget are exactly the end
+     * nodes in here, so fuzzyTopK(frontier, k) is a scan of the frontier, and one
+     * more typed character is derived from the previous frontier instead of a walk
+     * from the root (see extendFrontier). The size depends on how many prefixes are
+     * close to the query, not on the vocabulary.
+     *
+     * Holds live trie nodes: frequencies read later are current, but a word added
+     * after the frontier was built only shows up in frontiers built after it.
+     */
+    public static final class FuzzyFrontier {
+        private final String key;   // normalized query
+        private final int queryLength;
+        private final int budget;
+        private final Node[] nodes;
+        private final int[] distance;
+        private final String[] paths; // normalized key of each node
+
+        private FuzzyFrontier(String key, int queryLength, int budget, Node[] nodes, int[] distance, String[] paths) {
+            this.key = key; this.queryLength = queryLength; this.budget = budget;
+            this.nodes = nodes; this.distance = distance; this.paths = paths;
+        }
+
+        public String key() { return key; }
+        public int size() { return nodes.length; }
+
+        /** Rough heap footprint, for callers that bound memory by weight. */
+        public long bytes() {
+            long b = 64 + key.length() * 2L + nodes.length * 12L;
+            for (String p : paths) b += 40 + p.length() * 2L;
+            return b;
+        }
+    }
+
+    /** Frontier for a normalized query, built with one bounded walk from the root. */
+    public FuzzyFrontier fuzzyFrontier(String key) {
+        if (key == null) key = "";
+        int[] q = TextNormalizer.codePoints(key);
+        int budget = maxDistanceFor(q.length);
+        int[] row0 = new int[q.length + 1];
+        for (int i = 0; i < row0.length; i++) row0[i] = i;
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> dist = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (q.length <= budget) { nodes.add(root); dist.add(q.length); paths.add(""); }
+            StringBuilder path = new StringBuilder();
+            for (Map.Entry<Integer, Node> e : root.children.entrySet()) {
+                frontierWalk(e.getValue(), e.getKey(), row0, q, budget, path, nodes, dist, paths);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int[] d = new int[dist.size()];
+        for (int i = 0; i < d.length; i++) d[i] = dist.get(i);
+        return new FuzzyFrontier(key, q.length, budget, nodes.toArray(new Node[0]), d, paths.toArray(new String[0]));
+    }
+
+    private static void frontierWalk(Node node, int cp, int[] prev, int[] q, int budget, StringBuilder path,
+                                     List<Node> nodes, List<Integer> dist, List<String> paths) {
+        int[] row = new int[prev.length];
+        row[0] = prev[0] + 1;
+        int rowMin = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int cost = q[i - 1] == cp ? 0 : 1;
+            row[i] = Math.min(Math.min(row[i - 1] + 1, prev[i] + 1), prev[i - 1] + cost);
+            if (row[i] < rowMin) rowMin = row[i];
+        }
+        if (rowMin > budget) return;
+        int len = path.length();
+        path.appendCodePoint(cp);
+        if (row[row.length - 1] <= budget) {
+            nodes.add(node); dist.add(row[row.length - 1]); paths.add(path.toString());
+        }
+        for (Map.Entry<Integer, Node> e : node.children.entrySet()) {
+            frontierWalk(e.getValue(), e.getKey(), row, q, budget, path, nodes, dist, paths);
+        }
+        path.setLength(len);
+    }
+
+    /**
+     * Frontier for the previous query plus one code point. While the edit budget
+     * stays the same this only looks at the previous frontier and its children:
+     * a node's new distance is min(old + 1, parent's old + substitution cost,
+     * parent's new + 1), settled in order of distance. When the longer query earns
+     * one more edit, nodes that were over the old budget may now qualify, so the
+     * frontier is rebuilt from the root.
+     */
+    public FuzzyFrontier extendFrontier(FuzzyFrontier prev, int codePoint) {
+        String key = new StringBuilder(prev.key).appendCodePoint(codePoint).toString();
+        int budget = maxDistanceFor(prev.queryLength + 1);
+        if (budget != prev.budget) return fuzzyFrontier(key);
+
+        Map<Node, Integer> best = new IdentityHashMap<>();
+        Map<Node, String> pathOf = new IdentityHashMap<>();
+        List<List<Node>> byDistance = new ArrayList<>(budget + 1);
+        for (int i = 0; i <= budget; i++) byDistance.add(new ArrayList<>());
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < prev.nodes.length; i++) {
+                Node n = prev.nodes[i];
+                int d = prev.distance[i];
+                relax(n, d + 1, prev.paths[i], budget, best, pathOf, byDistance); // the new character is dropped
+                for (Map.Entry<Integer, Node> e : n.children.entrySet()) {
+                    int cost = e.getKey() == codePoint ? 0 : 1;
+                    relax(e.getValue(), d + cost, childPath(prev.paths[i], e.getKey()), budget, best, pathOf, byDistance);
+                }
+            }
+            // letters of the word beyond the query are insertions: +1 per level down
+            for (int d = 0; d < budget; d++) {
+                List<Node> level = byDistance.get(d);
+                for (int i = 0; i < level.size(); i++) {
+                    Node n = level.get(i);
+                    if (best.get(n) != d) continue; // improved after it was queued here
+                    String p = pathOf.get(n);
+                    for (Map.Entry<Integer, Node> e : n.children.entrySet()) {
+                        relax(e.getValue(), d + 1, childPath(p, e.getKey()), budget, best, pathOf, byDistance);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Node[] nodes = new Node[best.size()];
+        int[] dist = new int[nodes.length];
+        String[] paths = new String[nodes.length];
+        int i = 0;
+        for (Map.Entry<Node, Integer> e : best.entrySet()) {
+            nodes[i] = e.getKey(); dist[i] = e.getValue(); paths[i] = pathOf.get(e.getKey()); i++;
+        }
+        return new FuzzyFrontier(key, prev.queryLength + 1, budget, nodes, dist, paths);
+    }
+
+    private static void relax(Node n, int d, String path, int budget, Map<Node, Integer> best, Map<Node, String> pathOf,
+                              List<List<Node>> byDistance) {
+        if (d > budget) return;
+        Integer cur = best.get(n);
+        if (cur != null && cur <= d) return;
+        best.put(n, d);
+        pathOf.put(n, path);
+        byDistance.get(d).add(n);
+    }
+
+    private static String childPath(String path, int cp) {
+        return new StringBuilder(path.length() + 2).append(path).appendCodePoint(cp).toString();
+    }
+
+    /** Same result as fuzzyTopK(frontier.key(), k), read off an already built frontier. */
+    public List<FuzzyMatch> fuzzyTopK(FuzzyFrontier f, int k) {
+        if (f == null || k <= 0 || f.queryLength == 0) return Collections.emptyList();
+        PriorityQueue<FuzzyMatch> heap = new PriorityQueue<>(Comparator.comparingDouble((FuzzyMatch m) -> m.score));
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < f.nodes.length; i++) {
+                Node n = f.nodes[i];
+                if (!n.end) continue;
+                if (heap.size() >= k && fuzzyScore(n.freq, f.distance[i]) <= heap.peek().score) continue;
+                heap.offer(new FuzzyMatch(n.word, f.paths[i], n.freq, f.distance[i]));
+                if (heap.size() > k) heap.poll();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<FuzzyMatch> out = new ArrayList<>(heap);
+        out.sort(Comparator.comparingDouble((FuzzyMatch m) -> m.score).reversed());
+        return out;
+    }
+
+    /**
+     * Try to return a best correction for token from vocabulary using Fuzzy.didYouMeanScore.
      * Returns Optional.empty() when not confident.
      */
     public Optional<String> findDidYouMean(String token) {
         if (token == null || token.length() < 2) return Optional.empty();
-        Map<String, Long> vocab = getVocabulary();
-        String best = null;
+        String key = normalizer.normalize(token);
+        return Optional.ofNullable(bestCorrection(key, fuzzyTopK(key, 20)));
+    }
+
+    /** Pick the did-you-mean among already ranked fuzzy hits; null when none is confident. */
+    public static String bestCorrection(String key, List<FuzzyMatch> matches) {
+        int qlen = key.codePointCount(0, key.length());
+        FuzzyMatch best = null;
         double bestScore = 0.0;
-        for (Map.Entry<String, Long> e : vocab.entrySet()) {
-            String w = e.getKey();
-            double sim = Fuzzy.similarity(token, w);
-            // bias by frequency a bit
-            double score = sim + Math.log(e.getValue() + 1) / 50.0;
+        for (FuzzyMatch m : matches) {
+            double score = Fuzzy.didYouMeanScore(m.distance, qlen, m.key.codePointCount(0, m.key.length()), m.freq);
             if (score > bestScore) {
                 bestScore = score;
-                best = w;
+                best = m;
             }
         }
-        // require reasonable similarity to consider as suggestion
-        if (best != null && bestScore >= 0.65) {
-            return Optional.of(best);
-        }
-        return Optional.empty();
+        // require reasonable similarity, and nothing to suggest when the query itself wins
+        if (best == null || best.distance == 0 || bestScore < Fuzzy.DID_YOU_MEAN_THRESHOLD) return null;
+        return best.word;
     }
 
     /**
@@ -135,24 +671,44 @@ public class FrequencyAwareTrie {
      */
     public Map<String, Long> getVocabulary() {
         Map<String, Long> out = new HashMap<>();
+        for (Entry e : entries()) out.put(e.word, e.freq);
+        return out;
+    }
+
+    /** One vocabulary entry: normalized key, display word and frequency. */
+    public static final class Entry {
+        public final String key;
+        public final String word;
+        public final long freq;
+        public final double logScore;   // base + decayed usage as of entries(), compare with FrequencyAwareTrie.decayed()
+        public final long lastTouched;
+        Entry(String key, String word, long freq, double logScore, long lastTouched) {
+            this.key = key; this.word = word; this.freq = freq; this.logScore = logScore; this.lastTouched = lastTouched;
+        }
+    }
+
+    /** Snapshot of every word in the trie with its normalized key. */
+    public List<Entry> entries() {
+        List<Entry> out = new ArrayList<>();
         lock.readLock().lock();
         try {
-            traverseCollect(root, new StringBuilder(), out);
+            traverseCollect(root, new StringBuilder(), out, shiftAt(System.currentTimeMillis()));
         } finally {
             lock.readLock().unlock();
         }
         return out;
     }
 
-    private void traverseCollect(Node node, StringBuilder cur, Map<String, Long> out) {
+    private void traverseCollect(Node node, StringBuilder cur, List<Entry> out, double shift) {
         if (node == null) return;
         if (node.end) {
-            out.put(cur.toString(), node.freq);
+            out.add(new Entry(cur.toString(), node.word, node.freq, rankScore(node.base, node.logScore, shift), node.lastTouched));
         }
-        for (Map.Entry<Character, Node> e : node.children.entrySet()) {
-            cur.append(e.getKey());
-            traverseCollect(e.getValue(), cur, out);
-            cur.deleteCharAt(cur.length() - 1);
+        for (Map.Entry<Integer, Node> e : node.children.entrySet()) {
+            int len = cur.length();
+            cur.appendCodePoint(e.getKey());
+            traverseCollect(e.getValue(), cur, out, shift);
+            cur.setLength(len);
         }
     }
 
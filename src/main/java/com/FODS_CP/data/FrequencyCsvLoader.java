@@ -2,7 +2,9 @@ package com.FODS_CP.data;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import com.FODS_CP.service.LearningService;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
@@ -14,19 +16,23 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Component
+@Order(0) // before StartupWarmup
 public class FrequencyCsvLoader implements CommandLineRunner {
 
     private final ResourceLoader resourceLoader;
     private final WordFrequencyService wordFrequencyService;
     private final FrequencyAwareTrie trie; // <-- ADD THIS
+    private final LearningService learningService;
 
     // Modify the constructor to accept the new service
     public FrequencyCsvLoader(ResourceLoader resourceLoader,
                               WordFrequencyService wordFrequencyService,
-                              FrequencyAwareTrie trie) { // <-- ADD THIS
+                              FrequencyAwareTrie trie, // <-- ADD THIS
+                              LearningService learningService) {
         this.resourceLoader = resourceLoader;
         this.wordFrequencyService = wordFrequencyService;
         this.trie = trie;
+        this.learningService = learningService;
     }
 
     @Override
@@ -34,6 +40,7 @@ public class FrequencyCsvLoader implements CommandLineRunner {
         // --- This first part is the same as before ---
         System.out.println("Starting frequency CSV loading process...");
         Map<String, Long> frequencies = new HashMap<>();
+        Map<String, String> categories = new HashMap<>(); // optional third column
         Resource resource = resourceLoader.getResource("classpath:word_frequencies.csv");
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("word", "frequency")
@@ -46,6 +53,7 @@ public class FrequencyCsvLoader implements CommandLineRunner {
                 try {
                     long frequency = Long.parseLong(csvRecord.get("frequency"));
                     frequencies.put(word, frequency);
+                    if (csvRecord.size() > 2 && !csvRecord.get(2).isBlank()) categories.put(word, csvRecord.get(2).trim());
                 } catch (NumberFormatException e) {
                     System.err.println("Could not parse frequency for word: " + word);
                 }
@@ -57,9 +65,12 @@ public class FrequencyCsvLoader implements CommandLineRunner {
         // --- ADD THIS NEW SECTION TO BUILD THE TRIE ---
         System.out.println("Building the Trie data structure...");
         for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
-            trie.insert(entry.getKey(), entry.getValue());
+            trie.insert(entry.getKey(), entry.getValue(), categories.get(entry.getKey()));
         }
         System.out.println("Trie has been built successfully.");
+
+        // learned updates go on top of the static counts
+        learningService.replay();
     }
 
     public void loadCsvAndPopulateTrie() {
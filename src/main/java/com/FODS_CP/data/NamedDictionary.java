@@ -0,0 +1,266 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.Suggestion;
+import com.FODS_CP.service.TextNormalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.*;
+
+/**
+ * One named dictionary (a locale, a tenant's product vocabulary) on top of the
+ * SharedLexicon. The strings live in the shared automaton; all this keeps is the
+ * shared numbers of its own words (ascending) with a count each, the spelling
+ * shown for each where it differs from the normalized key ("Café" for "café"),
+ * and a max-tree over the counts, so its size follows its own vocabulary and
+ * not the union.
+ * A prefix is a contiguous number range in the lexicon and therefore also a
+ * contiguous slice of the ids (two binary searches); completing it is a top-k
+ * query over that slice, O(k log n) however short the prefix.
+ *
+ * Read-only: learning (accept, decay, n-grams, phrases) stays with the default
+ * dictionary. Each dictionary has its own suggestion cache, dropped with it.
+ */
+public final class NamedDictionary {
+
+    public final String name;
+    private final Cache<String, Object> cache;
+    private volatile View view;
+
+    // one consistent snapshot; swapped whole when the shared lexicon is rebuilt
+    private static final class View {
+        final SharedLexicon lexicon;
+        final int[] ids;   // shared word numbers of this dictionary, ascending
+        final long[] freq; // count of ids[i]
+        final String[] display; // surface form of ids[i], null when it is the key itself
+        final int[] tree;  // tree[n + i] = i, inner nodes hold the index of the larger child
+
+        View(SharedLexicon lexicon, int[] ids, long[] freq, String[] display) {
+            this.lexicon = lexicon;
+            this.ids = ids;
+            this.freq = freq;
+            this.display = display;
+            int n = freq.length;
+            this.tree = new int[Math.max(2, 2 * n)];
+            for (int i = 0; i < n; i++) tree[n + i] = i;
+            for (int i = n - 1; i >= 1; i--) tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        private int better(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            return freq[b] > freq[a] || (freq[b] == freq[a] && b < a) ? b : a;
+        }
+
+        // local index of the largest count in [l, r), -1 when empty
+        int argMax(int l, int r) {
+            int n = freq.length, best = -1;
+            for (l += n, r += n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) best = better(best, tree[l++]);
+                if ((r & 1) == 1) best = better(best, tree[--r]);
+            }
+            return best;
+        }
+
+        // first local index at or after from whose shared number is >= n
+        int lowerBound(int from, int n) {
+            int lo = from, hi = ids.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids[mid] < n) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        int localIndex(int n) {
+            int i = lowerBound(0, n);
+            return i < ids.length && ids[i] == n ? i : -1;
+        }
+
+        String word(int at) {
+            return display[at] != null ? display[at] : lexicon.wordAt(ids[at]);
+        }
+    }
+
+    NamedDictionary(String name, SharedLexicon lexicon, Map<String, Long> counts, Cache<String, Object> cache) {
+        this(name, lexicon, counts, Collections.emptyMap(), cache);
+    }
+
+    /** surface: normalized key -> spelling to show, for the keys where the two differ. */
+    NamedDictionary(String name, SharedLexicon lexicon, Map<String, Long> counts, Map<String, String> surface,
+                    Cache<String, Object> cache) {
+        this.name = name;
+        this.cache = cache;
+        // (shared number << 32 | position in values) sorts by shared number
+        long[] order = new long[counts.size()];
+        long[] values = new long[counts.size()];
+        String[] shown = new String[counts.size()];
+        int n = 0;
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            int i = lexicon.indexOf(e.getKey());
+            if (i < 0 || e.getValue() <= 0) continue;
+            values[n] = e.getValue();
+            String w = surface.get(e.getKey());
+            shown[n] = w == null || w.equals(e.getKey()) ? null : w;
+            order[n] = (long) i << 32 | n;
+            n++;
+        }
+        Arrays.sort(order, 0, n);
+        int[] ids = new int[n];
+        long[] freq = new long[n];
+        String[] display = new String[n];
+        for (int j = 0; j < n; j++) {
+            ids[j] = (int) (order[j] >>> 32);
+            freq[j] = values[(int) order[j]];
+            display[j] = shown[(int) order[j]];
+        }
+        this.view = new View(lexicon, ids, freq, display);
+    }
+
+    /** Suggestion cache partition of this dictionary. */
+    public Cache<String, Object> cache() { return cache; }
+
+    public int words() { return view.ids.length; }
+
+    /** Bytes held by this dictionary alone (the shared lexicon not included). */
+    public long bytes() {
+        View v = view;
+        long b = 4L * v.ids.length + 8L * v.freq.length + 4L * v.tree.length + 4L * v.display.length;
+        for (String w : v.display) if (w != null) b += 40 + 2L * w.length();
+        return b;
+    }
+
+    public boolean contains(String key) {
+        return frequency(key) > 0;
+    }
+
+    public long frequency(String key) {
+        View v = view;
+        int i = v.lexicon.indexOf(key);
+        int at = i >= 0 ? v.localIndex(i) : -1;
+        return at >= 0 ? v.freq[at] : 0;
+    }
+
+    /** Top-limit words starting with a normalized key, most frequent first. */
+    public List<Suggestion> complete(String key, int limit) {
+        View v = view;
+        int[] range = v.lexicon.prefixRange(key == null ? "" : key);
+        if (range == null || limit <= 0) return Collections.emptyList();
+        int from = v.lowerBound(0, range[1]);
+        int to = v.lowerBound(from, range[1] + v.lexicon.count(range[0]));
+
+        // best-first over sub-ranges: pop the range with the largest max, split around it
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> v.freq[a[0]] != v.freq[b[0]]
+                ? Long.compare(v.freq[b[0]], v.freq[a[0]]) : Integer.compare(a[0], b[0]));
+        int m = v.argMax(from, to);
+        if (m >= 0) ranges.add(new int[] { m, from, to });
+        List<Suggestion> out = new ArrayList<>(limit);
+        while (!ranges.isEmpty() && out.size() < limit) {
+            int[] r = ranges.poll();
+            out.add(new Suggestion(v.word(r[0]), v.freq[r[0]]));
+            int left = v.argMax(r[1], r[0]);
+            if (left >= 0) ranges.add(new int[] { left, r[1], r[0] });
+            int right = v.argMax(r[0] + 1, r[2]);
+            if (right >= 0) ranges.add(new int[] { right, r[0] + 1, r[2] });
+        }
+        return out;
+    }
+
+    /**
+     * Same contract as FrequencyAwareTrie.fuzzyTopK: one Levenshtein row per state
+     * of the shared automaton. Subtrees are cut by the edit budget and, once k hits
+     * are held, by this dictionary's best count in the subtree's number range;
+     * subtrees holding none of its words are never entered.
+     */
+    public List<FrequencyAwareTrie.FuzzyMatch> fuzzyTopK(String key, int k) {
+        if (key == null || key.isEmpty() || k <= 0) return Collections.emptyList();
+        View v = view;
+        int[] q = TextNormalizer.codePoints(key);
+        int maxDist = FrequencyAwareTrie.maxDistanceFor(q.length);
+        int[] row0 = new int[q.length + 1];
+        for (int i = 0; i < row0.length; i++) row0[i] = i;
+        PriorityQueue<FrequencyAwareTrie.FuzzyMatch> heap = new PriorityQueue<>(Comparator.comparingDouble((FrequencyAwareTrie.FuzzyMatch m) -> m.score));
+        fuzzyWalk(v, 0, 0, 0, row0, q, maxDist, k, heap, new StringBuilder());
+        List<FrequencyAwareTrie.FuzzyMatch> out = new ArrayList<>(heap);
+        out.sort(Comparator.comparingDouble((FrequencyAwareTrie.FuzzyMatch m) -> m.score).reversed());
+        return out;
+    }
+
+    // base: shared number of the first word at state; at: local index of the first of ours at or after it
+    private void fuzzyWalk(View v, int state, int base, int at, int[] prev, int[] q, int maxDist, int k,
+                           PriorityQueue<FrequencyAwareTrie.FuzzyMatch> heap, StringBuilder path) {
+        SharedLexicon lex = v.lexicon;
+        int child = base;
+        if (lex.terminal(state)) {
+            if (at < v.ids.length && v.ids[at] == base) {
+                int d = prev[prev.length - 1];
+                if (state != 0 && d <= maxDist) {
+                    String key = path.toString();
+                    FrequencyAwareTrie.FuzzyMatch m = new FrequencyAwareTrie.FuzzyMatch(
+                            v.display[at] != null ? v.display[at] : key, key, v.freq[at], d);
+                    if (heap.size() < k) heap.offer(m);
+                    else if (m.score > heap.peek().score) { heap.poll(); heap.offer(m); }
+                }
+                at++;
+            }
+            child++;
+        }
+        for (int e = lex.edgeStart(state); e < lex.edgeEnd(state); e++) {
+            int target = lex.edgeTarget(e), cp = lex.edgeLabel(e);
+            int n = lex.count(target);
+            int end = v.lowerBound(at, child + n);
+            boolean skip = at == end; // none of our words below
+            if (!skip) {
+                int[] row = new int[prev.length];
+                row[0] = prev[0] + 1;
+                int rowMin = row[0];
+                for (int i = 1; i < row.length; i++) {
+                    int cost = q[i - 1] == cp ? 0 : 1;
+                    row[i] = Math.min(Math.min(row[i - 1] + 1, prev[i] + 1), prev[i - 1] + cost);
+                    if (row[i] < rowMin) rowMin = row[i];
+                }
+                skip = rowMin > maxDist;
+                if (!skip && heap.size() >= k) {
+                    int best = v.argMax(at, end);
+                    skip = FrequencyAwareTrie.fuzzyScore(v.freq[best], rowMin) <= heap.peek().score;
+                }
+                if (!skip) {
+                    int len = path.length();
+                    path.appendCodePoint(cp);
+                    fuzzyWalk(v, target, child, at, row, q, maxDist, k, heap, path);
+                    path.setLength(len);
+                }
+            }
+            child += n;
+            at = end;
+        }
+    }
+
+    // rebuild support, see DictionaryRegistry
+
+    /** Flags the shared numbers of this dictionary's words in used (sized to its lexicon). */
+    void markWords(boolean[] used) {
+        for (int i : view.ids) used[i] = true;
+    }
+
+    /**
+     * Re-index onto a rebuilt lexicon: moved[old number] is the word's number in
+     * next, or -1 when it was dropped. Both lexicons number in code point order,
+     * so the ids stay ascending.
+     */
+    void remap(SharedLexicon next, int[] moved) {
+        View v = view;
+        int[] ids = new int[v.ids.length];
+        long[] freq = new long[v.ids.length];
+        String[] display = new String[v.ids.length];
+        int n = 0;
+        for (int i = 0; i < v.ids.length; i++) {
+            int j = moved[v.ids[i]];
+            if (j < 0) continue;
+            ids[n] = j;
+            display[n] = v.display[i];
+            freq[n++] = v.freq[i];
+        }
+        view = n == ids.length ? new View(next, ids, freq, display)
+                : new View(next, Arrays.copyOf(ids, n), Arrays.copyOf(freq, n), Arrays.copyOf(display, n));
+    }
+}
@@ -0,0 +1,190 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.NGramService;
+import com.FODS_CP.service.TextNormalizer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Multi-word completions ("how are y" -> "how are you").
+ *
+ * Phrases are stored as sequences of token ids (normalized token -> int, see
+ * TextNormalizer) in a trie whose edges are whole tokens. Every node keeps the
+ * top-K phrases of its subtree, so completing a phrase is one walk down the
+ * context tokens plus a read of the precomputed lists - no per-request merge.
+ *
+ * Seeded from the n-gram table at startup and fed by accepted multi-word
+ * suggestions at runtime. Counts only grow, which keeps the per-node top-K
+ * exact without rebuilding.
+ */
+@Service
+public class PhraseIndex {
+
+    private static class Node {
+        Map<Integer, Node> children = new HashMap<>();
+        long count = 0L;   // > 0 on nodes that end a phrase
+        int[] ids;         // token ids of the phrase ending here
+        Node[] top = new Node[0]; // best phrase ends in this subtree, count desc
+    }
+
+    /** A phrase continuing the looked-up context; `continuation` is the part after the matched context tokens. */
+    public static class Match {
+        public final String continuation; // normalized tokens joined by single spaces
+        public final long count;
+        public final int contextTokensUsed; // how many trailing context tokens matched (back-off)
+        Match(String continuation, long count, int contextTokensUsed) {
+            this.continuation = continuation; this.count = count; this.contextTokensUsed = contextTokensUsed;
+        }
+    }
+
+    private final Node root = new Node();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+    private final List<String> tokens = new ArrayList<>();
+    private final TextNormalizer normalizer;
+    private final NGramService nGramService;
+    private final int topK;
+    private int phraseCount;
+
+    @Autowired
+    public PhraseIndex(TextNormalizer normalizer, NGramService nGramService,
+                       @Value("${autocomplete.phrases.top-k:16}") int topK) {
+        this.normalizer = normalizer;
+        this.nGramService = nGramService;
+        this.topK = Math.max(1, topK);
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Map.Entry<String, Map<String, Long>> e : nGramService.getSnapshot().entrySet()) {
+            for (Map.Entry<String, Long> next : e.getValue().entrySet()) {
+                add(e.getKey() + " " + next.getKey(), next.getValue());
+            }
+        }
+        System.out.println("[PhraseIndex] " + phraseCount + " phrases, " + tokens.size() + " tokens");
+    }
+
+    /** Adds (or bumps) a phrase of two or more tokens; returns false for single words. */
+    public boolean add(String phrase, long count) {
+        List<TextNormalizer.Token> toks = normalizer.tokenize(phrase);
+        if (toks.size() < 2 || count <= 0) return false;
+        lock.writeLock().lock();
+        try {
+            int[] ids = new int[toks.size()];
+            Node cur = root;
+            List<Node> path = new ArrayList<>(ids.length + 1);
+            path.add(cur);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = idFor(toks.get(i).key);
+                cur = cur.children.computeIfAbsent(ids[i], k -> new Node());
+                path.add(cur);
+            }
+            if (cur.count == 0) { cur.ids = ids; phraseCount++; }
+            cur.count += count;
+            for (Node n : path) offer(n, cur);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Phrases that continue `contextKey` (normalized, space separated) with a token
+     * starting with `partial` ("" for any next token). Backs off to shorter trailing
+     * contexts until something matches.
+     */
+    public List<Match> complete(String contextKey, String partial, int limit) {
+        if (contextKey == null || contextKey.isBlank()) return Collections.emptyList();
+        String[] ctx = contextKey.split(" ");
+        String p = partial == null ? "" : partial;
+        lock.readLock().lock();
+        try {
+            for (int start = 0; start < ctx.length; start++) {
+                Node node = walk(ctx, start);
+                if (node == null) continue;
+                List<Match> out = collect(node, ctx.length - start, p, limit);
+                if (!out.isEmpty()) return out;
+            }
+            return Collections.emptyList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try { return phraseCount; } finally { lock.readLock().unlock(); }
+    }
+
+    private Node walk(String[] ctx, int start) {
+        Node cur = root;
+        for (int i = start; i < ctx.length && cur != null; i++) {
+            Integer id = tokenIds.get(ctx[i]);
+            cur = id == null ? null : cur.children.get(id);
+        }
+        return cur;
+    }
+
+    private List<Match> collect(Node node, int depth, String partial, int limit) {
+        List<Node> hits = new ArrayList<>();
+        if (partial.isEmpty()) {
+            for (Node n : node.top) if (n != node) hits.add(n);
+        } else {
+            for (Map.Entry<Integer, Node> e : node.children.entrySet()) {
+                if (!tokens.get(e.getKey()).startsWith(partial)) continue;
+                Collections.addAll(hits, e.getValue().top);
+            }
+            hits.sort((a, b) -> Long.compare(b.count, a.count));
+        }
+        List<Match> out = new ArrayList<>(Math.min(limit, hits.size()));
+        for (Node n : hits) {
+            if (out.size() >= limit) break;
+            StringBuilder sb = new StringBuilder();
+            for (int i = depth; i < n.ids.length; i++) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(tokens.get(n.ids[i]));
+            }
+            out.add(new Match(sb.toString(), n.count, depth));
+        }
+        return out;
+    }
+
+    // keep node.top as the K highest-count phrase ends below node
+    private void offer(Node node, Node end) {
+        Node[] top = node.top;
+        int at = -1;
+        for (int i = 0; i < top.length; i++) if (top[i] == end) { at = i; break; }
+        if (at < 0) {
+            if (top.length < topK) {
+                top = Arrays.copyOf(top, top.length + 1);
+                at = top.length - 1;
+            } else if (end.count > top[top.length - 1].count) {
+                at = top.length - 1;
+            } else {
+                return;
+            }
+            top[at] = end;
+        }
+        // bubble the updated entry up; counts only grow so it never moves down
+        while (at > 0 && top[at - 1].count < top[at].count) {
+            Node t = top[at - 1]; top[at - 1] = top[at]; top[at] = t;
+            at--;
+        }
+        node.top = top;
+    }
+
+    private int idFor(String token) {
+        Integer id = tokenIds.get(token);
+        if (id == null) {
+            id = tokens.size();
+            tokens.add(token);
+            tokenIds.put(token, id);
+        }
+        return id;
+    }
+}
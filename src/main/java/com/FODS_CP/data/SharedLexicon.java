@@ -0,0 +1,234 @@
+package com.FODS_CP.data;
+
+import java.util.*;
+
+/**
+ * Immutable minimal acyclic automaton (DAFSA) over the union of the words of
+ * every loaded named dictionary. Prefixes and suffixes are shared, so a word
+ * that appears in ten dictionaries is stored once, and so is "-ing".
+ *
+ * Words are numbered 0..size-1 in code point order (perfect hashing via
+ * per-state word counts). All words with a given prefix form one contiguous
+ * range of numbers, which is what lets each dictionary keep nothing but the
+ * sorted numbers of its own words and their counts (see NamedDictionary).
+ *
+ * Built with the sorted-input algorithm of Daciuk et al. and then flattened
+ * into int arrays: the edges of state s are edgeLabel/edgeTarget[edgeStart[s] ..
+ * edgeStart[s+1]), sorted by label.
+ */
+public final class SharedLexicon {
+
+    public static final SharedLexicon EMPTY = build(Collections.emptyList());
+
+    private final int[] edgeStart;
+    private final int[] edgeLabel;
+    private final int[] edgeTarget;
+    private final boolean[] terminal;
+    private final int[] count; // words accepted from each state
+
+    private SharedLexicon(int[] edgeStart, int[] edgeLabel, int[] edgeTarget, boolean[] terminal, int[] count) {
+        this.edgeStart = edgeStart;
+        this.edgeLabel = edgeLabel;
+        this.edgeTarget = edgeTarget;
+        this.terminal = terminal;
+        this.count = count;
+    }
+
+    /** Number of distinct words. */
+    public int size() { return count[0]; }
+    public int states() { return terminal.length; }
+    public int edges() { return edgeLabel.length; }
+
+    /** Approximate heap footprint of the arrays. */
+    public long bytes() {
+        return 4L * (edgeStart.length + edgeLabel.length + edgeTarget.length + count.length) + terminal.length;
+    }
+
+    /** Word number of a normalized key, or -1. */
+    public int indexOf(String key) {
+        int[] r = prefixRange(key);
+        return r != null && terminal[r[0]] ? r[1] : -1;
+    }
+
+    /** {state, first word number} for every word starting with key, or null; the range length is count(state). */
+    public int[] prefixRange(String key) {
+        int s = 0, n = 0;
+        for (int i = 0; i < key.length(); ) {
+            int cp = key.codePointAt(i);
+            if (terminal[s]) n++;
+            int next = -1;
+            for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+                if (edgeLabel[e] == cp) { next = edgeTarget[e]; break; }
+                if (edgeLabel[e] > cp) break;
+                n += count[edgeTarget[e]];
+            }
+            if (next < 0) return null;
+            s = next;
+            i += Character.charCount(cp);
+        }
+        return new int[] { s, n };
+    }
+
+    public int count(int state) { return count[state]; }
+
+    /** The word with number n. */
+    public String wordAt(int n) {
+        StringBuilder sb = new StringBuilder();
+        int s = 0;
+        while (true) {
+            if (terminal[s]) {
+                if (n == 0) return sb.toString();
+                n--;
+            }
+            int e = edgeStart[s];
+            for (; e < edgeStart[s + 1]; e++) {
+                int c = count[edgeTarget[e]];
+                if (n < c) break;
+                n -= c;
+            }
+            if (e == edgeStart[s + 1]) throw new IndexOutOfBoundsException("no word " + n);
+            sb.appendCodePoint(edgeLabel[e]);
+            s = edgeTarget[e];
+        }
+    }
+
+    /** Every word, in number order; one walk instead of a wordAt per number. */
+    public List<String> words() {
+        List<String> out = new ArrayList<>(size());
+        collect(0, new StringBuilder(), out);
+        return out;
+    }
+
+    private void collect(int s, StringBuilder sb, List<String> out) {
+        if (terminal[s]) out.add(sb.toString());
+        for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+            int len = sb.length();
+            sb.appendCodePoint(edgeLabel[e]);
+            collect(edgeTarget[e], sb, out);
+            sb.setLength(len);
+        }
+    }
+
+    // read access for walkers (fuzzy search)
+    int edgeStart(int s) { return edgeStart[s]; }
+    int edgeEnd(int s) { return edgeStart[s + 1]; }
+    int edgeLabel(int e) { return edgeLabel[e]; }
+    int edgeTarget(int e) { return edgeTarget[e]; }
+    boolean terminal(int s) { return terminal[s]; }
+
+    /** Build from normalized keys; duplicates are fine, order is not required. */
+    public static SharedLexicon build(Collection<String> keys) {
+        List<int[]> words = new ArrayList<>(keys.size());
+        for (String k : keys) if (k != null && !k.isEmpty()) words.add(k.codePoints().toArray());
+        words.sort(Arrays::compare);
+
+        Builder b = new Builder();
+        int[] prev = null;
+        for (int[] w : words) {
+            if (prev != null && Arrays.equals(prev, w)) continue;
+            b.add(w);
+            prev = w;
+        }
+        return b.finish();
+    }
+
+    // Daciuk, Mihov, Watson, Watson (2000): incremental construction from sorted input
+    private static final class Builder {
+        private static final class State {
+            final List<Integer> labels = new ArrayList<>(2);
+            final List<State> targets = new ArrayList<>(2);
+            boolean terminal;
+            int id = -1; // set once registered (minimized)
+        }
+
+        private record Signature(boolean terminal, int[] labels, int[] targets) {
+            @Override public boolean equals(Object o) {
+                return o instanceof Signature s && terminal == s.terminal
+                        && Arrays.equals(labels, s.labels) && Arrays.equals(targets, s.targets);
+            }
+            @Override public int hashCode() {
+                return 31 * (31 * Boolean.hashCode(terminal) + Arrays.hashCode(labels)) + Arrays.hashCode(targets);
+            }
+        }
+
+        private final State root = new State();
+        private final Map<Signature, State> register = new HashMap<>();
+        private final List<State> registered = new ArrayList<>();
+        private int[] previous = new int[0];
+
+        void add(int[] word) {
+            int common = 0;
+            while (common < word.length && common < previous.length && word[common] == previous[common]) common++;
+            State last = root;
+            for (int i = 0; i < common; i++) last = last.targets.get(last.targets.size() - 1);
+            if (!last.targets.isEmpty()) replaceOrRegister(last);
+            for (int i = common; i < word.length; i++) {
+                State next = new State();
+                last.labels.add(word[i]);
+                last.targets.add(next);
+                last = next;
+            }
+            last.terminal = true;
+            previous = word;
+        }
+
+        private void replaceOrRegister(State state) {
+            int lastIdx = state.targets.size() - 1;
+            State child = state.targets.get(lastIdx);
+            if (child.id >= 0) return; // already minimized
+            if (!child.targets.isEmpty()) replaceOrRegister(child);
+            Signature sig = signature(child);
+            State same = register.get(sig);
+            if (same != null) {
+                state.targets.set(lastIdx, same);
+            } else {
+                child.id = registered.size();
+                registered.add(child);
+                register.put(sig, child);
+            }
+        }
+
+        private static Signature signature(State s) {
+            int[] labels = new int[s.labels.size()];
+            int[] targets = new int[s.targets.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = s.labels.get(i);
+                targets[i] = s.targets.get(i).id;
+            }
+            return new Signature(s.terminal, labels, targets);
+        }
+
+        SharedLexicon finish() {
+            if (!root.targets.isEmpty()) replaceOrRegister(root);
+            // root gets index 0, registered states follow; children were always registered before parents
+            int n = registered.size() + 1;
+            int edges = root.labels.size();
+            for (State s : registered) edges += s.labels.size();
+            int[] edgeStart = new int[n + 1];
+            int[] edgeLabel = new int[edges];
+            int[] edgeTarget = new int[edges];
+            boolean[] terminal = new boolean[n];
+            int[] count = new int[n];
+            int e = 0;
+            for (int i = 0; i < n; i++) {
+                State s = i == 0 ? root : registered.get(i - 1);
+                edgeStart[i] = e;
+                terminal[i] = s.terminal;
+                for (int j = 0; j < s.labels.size(); j++) {
+                    edgeLabel[e] = s.labels.get(j);
+                    edgeTarget[e] = s.targets.get(j).id + 1;
+                    e++;
+                }
+            }
+            edgeStart[n] = e;
+            // children have lower registration order, so one pass in index order fills counts bottom-up
+            for (int i = 1; i <= n; i++) {
+                int s = i == n ? 0 : i;
+                int c = terminal[s] ? 1 : 0;
+                for (int k = edgeStart[s]; k < edgeStart[s + 1]; k++) c += count[edgeTarget[k]];
+                count[s] = c;
+            }
+            return new SharedLexicon(edgeStart, edgeLabel, edgeTarget, terminal, count);
+        }
+    }
+}
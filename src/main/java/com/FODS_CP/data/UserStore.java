@@ -1,7 +1,9 @@
 package com.FODS_CP.data;
 
+import com.FODS_CP.service.TextNormalizer;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
@@ -11,17 +13,22 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Simple file-backed user personalization store.
- * Writes periodically and at shutdown to a JSON file.
+ * Seeded from a JSON file; increments learned at runtime are made durable by
+ * LearningService (write-ahead log + checkpoints), so the file is only
+ * rewritten when save() is called explicitly.
  */
 @Component
 public class UserStore {
     private final ConcurrentHashMap<String, ConcurrentHashMap<String,Integer>> store = new ConcurrentHashMap<>();
     private final ObjectMapper mapper = new ObjectMapper();
     private final File file;
+    private final TextNormalizer normalizer;
 
-    public UserStore() {
+    public UserStore(TextNormalizer normalizer,
+                     @Value("${autocomplete.users.file:user_personalization.json}") String path) {
+        this.normalizer = normalizer;
         try {
-            Path p = Path.of("user_personalization.json").toAbsolutePath();
+            Path p = Path.of(path).toAbsolutePath();
             file = p.toFile();
             if (file.exists()) {
                 Map<String, Map<String,Integer>> loaded = mapper.readValue(file, new TypeReference<>(){});
@@ -30,16 +37,22 @@ public class UserStore {
         } catch (Exception e) {
             throw new RuntimeException("Failed to load user store", e);
         }
-        // add shutdown hook to persist
-        Runtime.getRuntime().addShutdownHook(new Thread(this::save));
     }
 
     public Map<String,Integer> getUser(String userId) {
         return store.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
     }
 
-    public void increment(String userId, String key) {
-        getUser(userId).merge(key.toLowerCase(), 1, Integer::sum);
+    /** Returns the normalized key that was counted. */
+    public String increment(String userId, String key) {
+        String k = normalizer.normalizeContext(key);
+        getUser(userId).merge(k, 1, Integer::sum);
+        return k;
+    }
+
+    /** Add to an already normalized key (log replay). */
+    public void add(String userId, String normalizedKey, int count) {
+        getUser(userId).merge(normalizedKey, count, Integer::sum);
     }
 
     public void save() {
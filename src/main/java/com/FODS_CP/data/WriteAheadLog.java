@@ -0,0 +1,206 @@
+package com.FODS_CP.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of small binary records split into numbered segment files
+ * (wal-0000000000000001.log, ...).
+ *
+ * Record layout: [int length][int crc32][payload]. Appends only queue the
+ * record; one writer thread drains the queue every commit interval, writes
+ * the batch with a single gathering write and then fsyncs according to the
+ * policy:
+ *   ALWAYS   - fsync every batch, append() futures complete after the fsync
+ *   INTERVAL - fsync every batch, appenders do not wait (lose at most one interval)
+ *   NEVER    - leave flushing to the OS
+ *
+ * A torn or corrupt record (crash mid-write) ends the replay of its segment.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    public enum Fsync { ALWAYS, INTERVAL, NEVER }
+
+    private static final int MAX_RECORD = 1 << 20;
+
+    private final Path dir;
+    private final Fsync fsync;
+    private final long commitIntervalMs;
+
+    private final Object lock = new Object(); // guards the queue; appenders only ever take this one
+    private final Object io = new Object();   // guards the channel; taken before lock, never inside it
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private FileChannel channel;
+    private long segment;
+    private long bytesInSegment;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    public WriteAheadLog(Path dir, Fsync fsync, long commitIntervalMs) throws IOException {
+        this.dir = dir;
+        this.fsync = fsync;
+        this.commitIntervalMs = Math.max(1, commitIntervalMs);
+        Files.createDirectories(dir);
+        List<Long> existing = segments();
+        // never append to a segment that may end in a torn record
+        this.segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        this.channel = open(segment);
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queue a record; the future completes once it is written (and fsynced under ALWAYS). */
+    public CompletableFuture<Void> append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (lock) {
+            if (!running) {
+                done.completeExceptionally(new IllegalStateException("log closed"));
+                return done;
+            }
+            pending.add(buf);
+            waiters.add(done);
+            if (fsync == Fsync.ALWAYS) lock.notifyAll(); // group commit: whoever is queued by now rides along
+        }
+        return done;
+    }
+
+    /**
+     * Start a new segment and return its number. Records appended before this call
+     * are in older segments, later ones in the new segment or after.
+     */
+    public long rotate() throws IOException {
+        synchronized (io) {
+            flush();
+            channel.close();
+            segment++;
+            channel = open(segment);
+            bytesInSegment = 0;
+            return segment;
+        }
+    }
+
+    /** Delete segments older than `segment` (already covered by a checkpoint). */
+    public void deleteBefore(long segment) throws IOException {
+        for (long s : segments()) {
+            if (s < segment) Files.deleteIfExists(segmentPath(s));
+        }
+    }
+
+    /** Replay every record of segments >= fromSegment, oldest first. Call before appending. */
+    public long replay(long fromSegment, Consumer<byte[]> consumer) throws IOException {
+        long records = 0;
+        for (long s : segments()) {
+            if (s < fromSegment || s >= segment) continue;
+            byte[] all = Files.readAllBytes(segmentPath(s));
+            ByteBuffer buf = ByteBuffer.wrap(all);
+            while (buf.remaining() >= 8) {
+                int len = buf.getInt();
+                int crc = buf.getInt();
+                if (len < 0 || len > MAX_RECORD || len > buf.remaining()) break;
+                byte[] payload = new byte[len];
+                buf.get(payload);
+                CRC32 c = new CRC32();
+                c.update(payload);
+                if ((int) c.getValue() != crc) break;
+                consumer.accept(payload);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    public long bytesInSegment() {
+        synchronized (io) { return bytesInSegment; }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            synchronized (lock) {
+                try {
+                    if (pending.isEmpty() || fsync != Fsync.ALWAYS) lock.wait(commitIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    // write and fsync everything queued so far; appends keep queueing meanwhile
+    private void flush() {
+        synchronized (io) {
+            List<ByteBuffer> batch;
+            List<CompletableFuture<Void>> done;
+            synchronized (lock) {
+                if (pending.isEmpty()) return;
+                batch = pending;
+                done = waiters;
+                pending = new ArrayList<>();
+                waiters = new ArrayList<>();
+            }
+            write(batch, done);
+        }
+    }
+
+    private void write(List<ByteBuffer> batch, List<CompletableFuture<Void>> done) {
+        try {
+            ByteBuffer[] bufs = batch.toArray(new ByteBuffer[0]);
+            long n = 0;
+            while (bufs[bufs.length - 1].hasRemaining()) n += channel.write(bufs);
+            bytesInSegment += n;
+            if (fsync != Fsync.NEVER) channel.force(false);
+            for (CompletableFuture<Void> f : done) f.complete(null);
+        } catch (IOException e) {
+            System.err.println("[WAL] write failed: " + e.getMessage());
+            for (CompletableFuture<Void> f : done) f.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        synchronized (io) {
+            flush();
+            channel.close();
+        }
+        writer.interrupt();
+    }
+
+    private FileChannel open(long s) throws IOException {
+        return FileChannel.open(segmentPath(s), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long s) {
+        return dir.resolve(String.format("wal-%016d.log", s));
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("wal-") && n.endsWith(".log"))
+                    .forEach(n -> {
+                        try { out.add(Long.parseLong(n.substring(4, n.length() - 4))); } catch (NumberFormatException ignored) {}
+                    });
+        }
+        out.sort(null);
+        return out;
+    }
+}
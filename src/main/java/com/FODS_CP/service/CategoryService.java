@@ -2,10 +2,25 @@ package com.FODS_CP.service;
 
 import org.springframework.stereotype.Service;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Word categories as small integer ids.
+ *
+ * A word belongs to the category of the first keyword it contains ("javascript"
+ * -> Programming). Keywords are matched with an Aho-Corasick automaton, so
+ * classifying a word is one pass over its characters no matter how many
+ * keywords there are. The trie asks for the category once per word when the
+ * word is first inserted; a category column in the frequency file wins over
+ * the keywords.
+ */
 @Service
 public class CategoryService {
 
+    public static final String GENERAL = "General";
+    public static final int GENERAL_ID = 0;
+
     private static final Map<String, String> KEYWORDS = Map.ofEntries(
             Map.entry("java", "Programming"),
             Map.entry("spring", "Programming"),
@@ -15,11 +30,68 @@ public class CategoryService {
             Map.entry("movie", "Entertainment")
     );
 
-    public String getCategory(String word) {
-        for (var e : KEYWORDS.entrySet()) {
-            if (word.toLowerCase().contains(e.getKey())) return e.getValue();
+    // id -> name and back; ids are only ever appended
+    private final List<String> names = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // Aho-Corasick automaton over the keywords (states are array indexes, 0 = root)
+    private final List<Map<Integer, Integer>> gotoFn = new ArrayList<>();
+    private final List<Integer> fail = new ArrayList<>();
+    private final List<Integer> output = new ArrayList<>(); // category id of the best keyword ending here, -1 if none
+
+    public CategoryService() {
+        register(GENERAL);
+        // sorted so ids do not depend on map iteration order
+        for (String name : new TreeSet<>(KEYWORDS.values())) register(name);
+        buildAutomaton(new TreeMap<>(KEYWORDS));
+    }
+
+    /** Id for a category name, adding it when new (e.g. from the frequency file). */
+    public synchronized int register(String name) {
+        String n = name == null ? "" : name.strip();
+        if (n.isEmpty()) return GENERAL_ID;
+        Integer id = ids.get(n);
+        if (id != null) return id;
+        names.add(n);
+        ids.put(n, names.size() - 1);
+        return names.size() - 1;
+    }
+
+    /** Id of a known category (case-insensitive), or -1. */
+    public int idOf(String name) {
+        if (name == null) return -1;
+        Integer id = ids.get(name.strip());
+        if (id != null) return id;
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(name.strip())) return i;
+        }
+        return -1;
+    }
+
+    public String name(int id) {
+        return id >= 0 && id < names.size() ? names.get(id) : GENERAL;
+    }
+
+    public List<String> names() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /** Category of a normalized word: the keyword match that ends first, General when none. */
+    public int categoryOf(String key) {
+        if (key == null) return GENERAL_ID;
+        int state = 0;
+        for (int i = 0; i < key.length(); ) {
+            int cp = key.codePointAt(i);
+            while (state != 0 && !gotoFn.get(state).containsKey(cp)) state = fail.get(state);
+            state = gotoFn.get(state).getOrDefault(cp, 0);
+            if (output.get(state) >= 0) return output.get(state);
+            i += Character.charCount(cp);
         }
-        return "General";
+        return GENERAL_ID;
+    }
+
+    public String getCategory(String word) {
+        return name(categoryOf(word == null ? null : word.toLowerCase(Locale.ROOT)));
     }
 
     public Map<String, List<String>> groupByCategory(List<String> words) {
@@ -29,4 +101,44 @@ public class CategoryService {
         }
         return out;
     }
+
+    private void buildAutomaton(Map<String, String> keywords) {
+        newState();
+        for (Map.Entry<String, String> e : keywords.entrySet()) {
+            int state = 0;
+            String kw = e.getKey().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < kw.length(); ) {
+                int cp = kw.codePointAt(i);
+                Integer next = gotoFn.get(state).get(cp);
+                if (next == null) {
+                    next = newState();
+                    gotoFn.get(state).put(cp, next);
+                }
+                state = next;
+                i += Character.charCount(cp);
+            }
+            if (output.get(state) < 0) output.set(state, ids.get(e.getValue()));
+        }
+        // breadth-first failure links; a state inherits the output of its failure state
+        Deque<Integer> queue = new ArrayDeque<>(gotoFn.get(0).values());
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (Map.Entry<Integer, Integer> e : gotoFn.get(s).entrySet()) {
+                int cp = e.getKey(), t = e.getValue();
+                int f = fail.get(s);
+                while (f != 0 && !gotoFn.get(f).containsKey(cp)) f = fail.get(f);
+                Integer fNext = gotoFn.get(f).get(cp);
+                fail.set(t, fNext != null && fNext != t ? fNext : 0);
+                if (output.get(t) < 0) output.set(t, output.get(fail.get(t)));
+                queue.add(t);
+            }
+        }
+    }
+
+    private int newState() {
+        gotoFn.add(new HashMap<>());
+        fail.add(0);
+        output.add(-1);
+        return gotoFn.size() - 1;
+    }
 }
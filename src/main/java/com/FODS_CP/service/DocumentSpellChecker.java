@@ -0,0 +1,249 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.NamedDictionary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Spellcheck of whole documents (POST /api/spellcheck/document).
+ *
+ * The body is read in chunks cut at whitespace and tokenized with the
+ * TextNormalizer as it streams in. A token is known after one hash lookup
+ * (FrequencyAwareTrie.containsKey); only unknown tokens cost anything. Each
+ * distinct unknown token is handed to a worker pool for a fuzzyTopK the moment
+ * it is first seen, so correction overlaps reading and a typo repeated a
+ * thousand times is searched once. The pool's queue is bounded and a full queue
+ * runs the search on the request thread, so a document with many distinct typos
+ * slows its own reading down instead of queuing work without limit. A document
+ * gets at most max-distinct-unknown searches and max-issues reported issues;
+ * past either, stats.truncated is set.
+ *
+ * Which candidate wins is decided per occurrence: fuzzy score plus how often the
+ * candidate follows the previous word and precedes the next one (NGramService).
+ *
+ * Offsets are char offsets into the decoded text, end exclusive.
+ */
+@Service
+public class DocumentSpellChecker {
+
+    private static final int CHUNK_CHARS = 64 * 1024;
+    private static final int CANDIDATES = 10;
+    private static final int SUGGESTIONS = 3;
+    // a bigram seen ~e times is worth about one fuzzy-score point
+    private static final double CONTEXT_WEIGHT = 1.0;
+
+    private final FrequencyAwareTrie trie;
+    private final NGramService nGramService;
+    private final TextNormalizer normalizer;
+    private final MeterRegistry meterRegistry;
+    private final long maxBytes;
+    private final int maxDistinctUnknown;
+    private final int maxIssues;
+    private final ExecutorService workers;
+
+    /** Thrown when the body exceeds autocomplete.spellcheck.max-bytes. */
+    public static class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public TooLargeException(long max) { super("document larger than " + max + " bytes"); }
+    }
+
+    public static class Issue {
+        public final int start;
+        public final int end;
+        public final String word;
+        public String correction;           // null when nothing close enough was found
+        public List<String> suggestions = List.of();
+        private final String key, prevKey; // context for choosing, not serialized
+        private String nextKey = "";
+        Issue(TextNormalizer.Token t, String prevKey) {
+            this.start = t.start; this.end = t.end; this.word = t.surface; this.key = t.key; this.prevKey = prevKey;
+        }
+    }
+
+    public static class Stats {
+        public long bytes;
+        public long chars;
+        public long tokens;
+        public long unknown;
+        public long distinctUnknown;
+        public boolean truncated; // issues or searches hit their per-document cap
+        public long tookMs;
+        public double mbPerSecond;
+    }
+
+    public static class Result {
+        public final List<Issue> issues;
+        public final Stats stats;
+        Result(List<Issue> issues, Stats stats) { this.issues = issues; this.stats = stats; }
+    }
+
+    @Autowired
+    public DocumentSpellChecker(FrequencyAwareTrie trie, NGramService nGramService, TextNormalizer normalizer,
+                                MeterRegistry meterRegistry,
+                                @Value("${autocomplete.spellcheck.max-bytes:16777216}") long maxBytes,
+                                @Value("${autocomplete.spellcheck.threads:0}") int threads,
+                                @Value("${autocomplete.spellcheck.max-distinct-unknown:20000}") int maxDistinctUnknown,
+                                @Value("${autocomplete.spellcheck.max-issues:50000}") int maxIssues) {
+        this.trie = trie;
+        this.nGramService = nGramService;
+        this.normalizer = normalizer;
+        this.meterRegistry = meterRegistry;
+        this.maxBytes = maxBytes;
+        this.maxDistinctUnknown = Math.max(0, maxDistinctUnknown);
+        this.maxIssues = Math.max(0, maxIssues);
+        int n = threads > 0 ? threads : Math.max(2, Runtime.getRuntime().availableProcessors());
+        this.workers = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(n * 64), r -> {
+            Thread t = new Thread(r, "spellcheck");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /** Check a document against the default trie, or a named dictionary when given. */
+    public Result check(InputStream body, Charset charset, NamedDictionary dictionary) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream counted = new CountingInputStream(body, maxBytes);
+        Reader reader = new InputStreamReader(counted, charset);
+        Stats stats = new Stats();
+        List<Issue> issues = new ArrayList<>();
+        Map<String, Future<List<FrequencyAwareTrie.FuzzyMatch>>> candidates = new HashMap<>();
+
+        char[] buf = new char[CHUNK_CHARS];
+        StringBuilder pending = new StringBuilder();
+        int base = 0; // document offset of pending[0]
+        String prevKey = "";
+        Issue lastIssue = null;
+        boolean eof = false;
+        try {
+            while (!eof) {
+                int n = reader.read(buf);
+                if (n < 0) eof = true;
+                else pending.append(buf, 0, n);
+                int cut = eof ? pending.length() : lastWhitespace(pending) + 1;
+                if (cut <= 0) continue; // one long run without whitespace so far, wait for the rest
+                List<TextNormalizer.Token> tokens = normalizer.tokenize(pending.substring(0, cut));
+                for (TextNormalizer.Token t : tokens) {
+                    stats.tokens++;
+                    if (lastIssue != null) { lastIssue.nextKey = t.key; lastIssue = null; }
+                    if (!known(t.key, dictionary)) {
+                        stats.unknown++;
+                        if (issues.size() < maxIssues) {
+                            Issue issue = new Issue(shift(t, base), prevKey);
+                            issues.add(issue);
+                            lastIssue = issue;
+                        } else {
+                            stats.truncated = true;
+                        }
+                        if (!candidates.containsKey(t.key)) {
+                            if (candidates.size() < maxDistinctUnknown) {
+                                String k = t.key;
+                                candidates.put(k, workers.submit(() -> dictionary != null
+                                        ? dictionary.fuzzyTopK(k, CANDIDATES)
+                                        : trie.fuzzyTopK(k, CANDIDATES)));
+                            } else {
+                                stats.truncated = true; // still reported, without corrections
+                            }
+                        }
+                    }
+                    prevKey = t.key;
+                }
+                stats.chars += cut;
+                base += cut;
+                pending.delete(0, cut);
+            }
+            for (Issue issue : issues) {
+                Future<List<FrequencyAwareTrie.FuzzyMatch>> f = candidates.get(issue.key);
+                if (f != null) choose(issue, f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("spellcheck interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("correction failed", e.getCause());
+        } finally {
+            for (Future<?> f : candidates.values()) f.cancel(true);
+        }
+
+        long nanos = System.nanoTime() - start;
+        stats.bytes = counted.count;
+        stats.distinctUnknown = candidates.size();
+        stats.tookMs = TimeUnit.NANOSECONDS.toMillis(nanos);
+        stats.mbPerSecond = nanos > 0 ? (stats.bytes / 1_048_576.0) / (nanos / 1e9) : 0;
+        if (meterRegistry != null) {
+            meterRegistry.counter("autocomplete.spellcheck.bytes").increment(stats.bytes);
+            meterRegistry.timer("autocomplete.spellcheck.document").record(nanos, TimeUnit.NANOSECONDS);
+            meterRegistry.summary("autocomplete.spellcheck.throughput.mbps").record(stats.mbPerSecond);
+        }
+        return new Result(issues, stats);
+    }
+
+    // tokens with digits (ids, dates, versions) and single letters are never flagged
+    private boolean known(String key, NamedDictionary dictionary) {
+        if (key.codePointCount(0, key.length()) < 2) return true;
+        for (int i = 0; i < key.length(); i++) if (Character.isDigit(key.charAt(i))) return true;
+        return dictionary != null ? dictionary.contains(key) : trie.containsKey(key);
+    }
+
+    private void choose(Issue issue, List<FrequencyAwareTrie.FuzzyMatch> matches) {
+        List<double[]> ranked = new ArrayList<>(matches.size()); // {score, index}
+        for (int i = 0; i < matches.size(); i++) {
+            FrequencyAwareTrie.FuzzyMatch m = matches.get(i);
+            if (m.distance == 0) continue;
+            long context = nGramService.bigramCount(issue.prevKey, m.key) + nGramService.bigramCount(m.key, issue.nextKey);
+            ranked.add(new double[] { m.score + CONTEXT_WEIGHT * Math.log1p(context), i });
+        }
+        ranked.sort((a, b) -> Double.compare(b[0], a[0]));
+        List<String> out = new ArrayList<>(SUGGESTIONS);
+        for (int i = 0; i < ranked.size() && out.size() < SUGGESTIONS; i++) out.add(matches.get((int) ranked.get(i)[1]).word);
+        issue.suggestions = out;
+        issue.correction = out.isEmpty() ? null : out.get(0);
+    }
+
+    private static TextNormalizer.Token shift(TextNormalizer.Token t, int base) {
+        return base == 0 ? t : new TextNormalizer.Token(t.surface, t.key, t.start + base, t.end + base);
+    }
+
+    private static int lastWhitespace(CharSequence s) {
+        for (int i = s.length() - 1; i >= 0; i--) if (Character.isWhitespace(s.charAt(i))) return i;
+        return -1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // byte count for MB/s, and the size limit enforced while reading rather than after
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+        private final long max;
+        CountingInputStream(InputStream in, long max) { super(in); this.max = max; }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) add(1);
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) add(n);
+            return n;
+        }
+
+        private void add(long n) throws TooLargeException {
+            count += n;
+            if (max > 0 && count > max) throw new TooLargeException(max);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.FODS_CP.service;
 
 import org.apache.commons.text.similarity.LevenshteinDistance;
 
+import java.util.Locale;
+
 public final class Fuzzy {
     private static final LevenshteinDistance LD = new LevenshteinDistance(5); // allow up to 5 for apply()
 
@@ -14,8 +16,8 @@ public final class Fuzzy {
     public static double similarity(String a, String b) {
         if (a == null || b == null) return 0.0;
         if (a.equalsIgnoreCase(b)) return 1.0;
-        a = a.trim().toLowerCase();
-        b = b.trim().toLowerCase();
+        a = a.trim().toLowerCase(Locale.ROOT);
+        b = b.trim().toLowerCase(Locale.ROOT);
         if (a.isEmpty() || b.isEmpty()) return 0.0;
         int dist = LD.apply(a, b);
         // if LevenshteinDistance returns -1 when over threshold, convert to a large distance
@@ -26,4 +28,22 @@ public final class Fuzzy {
         if (sim < 0) sim = 0.0;
         return sim;
     }
+
+    /**
+     * Same value as similarity() when the edit distance is already known
+     * (lengths in code points). Distances above 5 count as no similarity, like similarity().
+     */
+    public static double similarityFromDistance(int distance, int lenA, int lenB) {
+        if (distance == 0) return 1.0;
+        double max = Math.max(lenA, lenB);
+        if (max == 0 || distance < 0 || distance > 5) return 0.0;
+        return Math.max(0.0, 1.0 - distance / max);
+    }
+
+    /** Did-you-mean confidence: similarity biased a bit by frequency, accepted at >= 0.65. */
+    public static double didYouMeanScore(int distance, int lenA, int lenB, long frequency) {
+        return similarityFromDistance(distance, lenA, lenB) + Math.log(frequency + 1) / 50.0;
+    }
+
+    public static final double DID_YOU_MEAN_THRESHOLD = 0.65;
 }
@@ -0,0 +1,199 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Incremental keystroke sessions.
+ *
+ * A session remembers, for every character typed so far, the trie position,
+ * the frequency-ranked completions and the fuzzy frontier: the trie nodes within
+ * the edit budget of the text, with their distances (FrequencyAwareTrie.FuzzyFrontier).
+ * Typing one more character extends the top frame from the one below it;
+ * backspace just pops frames. The work per keystroke is proportional to what
+ * changed instead of re-walking everything from the root, and a frame's size
+ * depends on how many prefixes are close to the text, not on the vocabulary.
+ *
+ * Text longer than MAX_DEPTH - 1 characters is not tracked; such requests run the
+ * normal pipeline. Frames are only valid for the trie they were built from: once
+ * a word is learned or re-counted (trie.version() moves) the session starts
+ * over from the root frame.
+ *
+ * Sessions live in a Caffeine cache bounded by an estimated byte weight and
+ * expire after a period of inactivity.
+ */
+@Service
+public class KeystrokeSessionService {
+
+    private static final int MAX_DEPTH = 64;
+
+    private final FrequencyAwareTrie trie;
+    private final SuggestPipeline pipeline;
+    private final TextNormalizer normalizer;
+    private final Cache<String, Session> sessions;
+
+    @Autowired
+    public KeystrokeSessionService(FrequencyAwareTrie trie,
+                                   SuggestPipeline pipeline,
+                                   TextNormalizer normalizer,
+                                   @Value("${autocomplete.session.max-bytes:67108864}") long maxBytes,
+                                   @Value("${autocomplete.session.idle-seconds:300}") long idleSeconds) {
+        this.trie = trie;
+        this.pipeline = pipeline;
+        this.normalizer = normalizer;
+        this.sessions = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String k, Session s) -> s.weight)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+    }
+
+    /** State for one typed prefix. Frames are immutable once pushed. */
+    private static class Frame {
+        final String text;                     // normalized query up to this frame
+        final FrequencyAwareTrie.Position pos; // null once no word has this prefix
+        List<Suggestion> completions;          // frequency-ranked, lazily filled
+        boolean completionsExhaustive;         // true when completions hold every word under pos
+        final FrequencyAwareTrie.FuzzyFrontier frontier;
+
+        Frame(String text, FrequencyAwareTrie.Position pos, FrequencyAwareTrie.FuzzyFrontier frontier) {
+            this.text = text; this.pos = pos; this.frontier = frontier;
+        }
+
+        long weight() {
+            long w = 64 + text.length() * 2L + frontier.bytes();
+            if (completions != null) w += completions.size() * 48L;
+            return w;
+        }
+    }
+
+    private static class Session {
+        final Deque<Frame> frames = new ArrayDeque<>();
+        long trieVersion;
+        volatile int weight = 64;
+    }
+
+    public String open() {
+        String token = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        Session s = new Session();
+        reset(s);
+        sessions.put(token, s);
+        return token;
+    }
+
+    private void reset(Session s) {
+        s.frames.clear();
+        s.trieVersion = trie.version(); // read first: a write racing the rebuild forces another reset
+        s.frames.push(new Frame("", trie.rootPosition(), trie.fuzzyFrontier("")));
+    }
+
+    public void close(String token) {
+        sessions.invalidate(token);
+    }
+
+    /** Suggest for the session's current text; returns null when the token is unknown or expired. */
+    public Result suggest(String token, String q, String context, int limit, String userId, LoadShedder.Permit permit) {
+        Session s = sessions.getIfPresent(token);
+        if (s == null) return null;
+        SuggestPipeline.Run run = pipeline.newRun(q, context, limit, userId);
+        String target = run.key;
+        Result result;
+        synchronized (s) {
+            if (s.trieVersion != trie.version()) reset(s);
+            Frame top = moveTo(s, target);
+            if (top.text.equals(target)) { // past MAX_DEPTH the frames stop short of the text
+                List<Suggestion> completions = completions(top, pipeline.completionFetchSize(run.limit));
+                run.withPresetCompletions(copy(completions)).withPresetFuzzy(trie.fuzzyTopK(top.frontier, 20));
+            }
+
+            if (run.prefix.isEmpty()) {
+                result = new Result(pipeline.nextWords(run), null);
+            } else {
+                // the frames are always extended; the limiter only trims what we merge on top
+                List<Suggestion> out = pipeline.completions(run);
+                if (permit.allowsRanking()) out = pipeline.ranked(run);
+                String dym = null;
+                if (permit.allowsCorrections()) {
+                    out = pipeline.corrections(run);
+                    dym = pipeline.didYouMean(run);
+                }
+                result = new Result(out, dym);
+            }
+            int w = 64;
+            for (Frame f : s.frames) w += (int) Math.min(Integer.MAX_VALUE / MAX_DEPTH, f.weight());
+            s.weight = w;
+        }
+        // re-weigh after the frames changed; never brings back a session close() just removed
+        sessions.asMap().computeIfPresent(token, (k, cur) -> cur);
+        return result;
+    }
+
+    public static class Result {
+        public final List<Suggestion> suggestions;
+        public final String didYouMean;
+        Result(List<Suggestion> suggestions, String didYouMean) { this.suggestions = suggestions; this.didYouMean = didYouMean; }
+    }
+
+    // pop back to the longest common prefix, then push one frame per new character
+    private Frame moveTo(Session s, String target) {
+        while (s.frames.size() > 1 && !target.startsWith(s.frames.peek().text)) s.frames.pop();
+        Frame top = s.frames.peek();
+        for (int i = top.text.length(); i < target.length() && s.frames.size() < MAX_DEPTH; ) {
+            int cp = target.codePointAt(i);
+            top = extend(top, cp);
+            s.frames.push(top);
+            i += Character.charCount(cp);
+        }
+        return top;
+    }
+
+    private Frame extend(Frame prev, int cp) {
+        String text = new StringBuilder(prev.text).appendCodePoint(cp).toString();
+        FrequencyAwareTrie.Position pos = trie.advance(prev.pos, cp);
+        Frame f = new Frame(text, pos, trie.extendFrontier(prev.frontier, cp));
+
+        // narrow the parent's completions when that is provably still the top of the child
+        if (prev.completions != null) {
+            List<Suggestion> narrowed = new ArrayList<>();
+            for (Suggestion c : prev.completions) {
+                if (normalizer.normalize(c.getText()).startsWith(text)) narrowed.add(c);
+            }
+            if (prev.completionsExhaustive || !narrowed.isEmpty()) {
+                f.completions = narrowed;
+                f.completionsExhaustive = prev.completionsExhaustive;
+            }
+        }
+        return f;
+    }
+
+    private List<Suggestion> completions(Frame f, int fetch) {
+        if (f.pos == null) return Collections.emptyList();
+        // a narrowed list is exact for as many entries as it holds; refill from the node when too short
+        if (f.completions != null && (f.completionsExhaustive || f.completions.size() >= fetch)) {
+            return f.completions.size() > fetch ? f.completions.subList(0, fetch) : f.completions;
+        }
+        List<Suggestion> fresh = trie.getSuggestions(f.pos, fetch);
+        f.completions = fresh;
+        f.completionsExhaustive = fresh.size() < fetch;
+        return fresh;
+    }
+
+    private static List<Suggestion> copy(List<Suggestion> in) {
+        List<Suggestion> out = new ArrayList<>(in.size());
+        for (Suggestion s : in) {
+            Suggestion c = new Suggestion(s.getText(), s.getFrequency());
+            c.setCategory(s.getCategory());
+            c.setLastUsedEpochMillis(s.getLastUsedEpochMillis());
+            c.setLogRank(s.getLogRank());
+            out.add(c);
+        }
+        return out;
+    }
+}
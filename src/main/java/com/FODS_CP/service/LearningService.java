@@ -0,0 +1,305 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.PhraseIndex;
+import com.FODS_CP.data.UserStore;
+import com.FODS_CP.data.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything the app learns at runtime (accepted words, accepted phrases and the
+ * n-grams inside them, per-user counts) goes through here so it survives a restart.
+ *
+ * Each update is applied in memory and appended to a WriteAheadLog as one small
+ * record; the log is group-committed by its writer thread. Periodically the
+ * deltas learned since the last checkpoint are folded into the compacted
+ * checkpoint (checkpoint.json) and the log segments it covers are deleted. Only
+ * those recent deltas are kept here; the totals live in the trie, phrase index
+ * and UserStore, and on disk in the checkpoint. On startup, after the static CSV
+ * has been loaded, the checkpoint is applied and the remaining log replayed.
+ *
+ * Only deltas are stored, never the seeded counts, so replay is independent of
+ * the dictionary it is applied to.
+ */
+@Service
+public class LearningService {
+
+    private final FrequencyAwareTrie trie;
+    private final PhraseIndex phraseIndex;
+    private final NGramService nGramService;
+    private final UserStore userStore;
+    private final TextNormalizer normalizer;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path dir;
+    private final WriteAheadLog wal;
+    private final WriteAheadLog.Fsync fsync;
+    private final long checkpointIntervalMs;
+    private final long checkpointBytes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "wal-checkpoint");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // deltas learned since the last checkpoint, guarded by this; what the next checkpoint folds in
+    private Map<String, WordDelta> words = new HashMap<>();
+    private Map<String, Long> phrases = new HashMap<>();
+    private Map<String, Map<String, Integer>> users = new HashMap<>();
+    private long eventsSinceCheckpoint;
+    private long lastCheckpointMillis = System.currentTimeMillis();
+    private boolean replayed;
+    // one checkpoint at a time, each one reads the file the previous one wrote
+    private final Object checkpointLock = new Object();
+
+    /** Learned usage of one word, in the trie's decay units. */
+    public static class WordDelta {
+        public String word;
+        public long count;
+        public double logScore = Double.NEGATIVE_INFINITY;
+        public long lastTouched;
+    }
+
+    /** On-disk checkpoint; replay continues with log segments >= segment. */
+    public static class Checkpoint {
+        public long segment;
+        public Map<String, WordDelta> words = new HashMap<>();
+        public Map<String, Long> phrases = new HashMap<>();
+        public Map<String, Map<String, Integer>> users = new HashMap<>();
+    }
+
+    @Autowired
+    public LearningService(FrequencyAwareTrie trie, PhraseIndex phraseIndex, NGramService nGramService,
+                           UserStore userStore, TextNormalizer normalizer, MeterRegistry meterRegistry,
+                           @Value("${autocomplete.wal.dir:data/wal}") String dir,
+                           @Value("${autocomplete.wal.fsync:interval}") String fsync,
+                           @Value("${autocomplete.wal.commit-interval-ms:50}") long commitIntervalMs,
+                           @Value("${autocomplete.wal.checkpoint-interval-seconds:300}") long checkpointIntervalSeconds,
+                           @Value("${autocomplete.wal.checkpoint-bytes:8388608}") long checkpointBytes) {
+        this.trie = trie;
+        this.phraseIndex = phraseIndex;
+        this.nGramService = nGramService;
+        this.userStore = userStore;
+        this.normalizer = normalizer;
+        this.meterRegistry = meterRegistry;
+        this.dir = Path.of(dir).toAbsolutePath();
+        this.fsync = WriteAheadLog.Fsync.valueOf(fsync.trim().toUpperCase(Locale.ROOT));
+        this.checkpointIntervalMs = Math.max(1, checkpointIntervalSeconds) * 1000L;
+        this.checkpointBytes = checkpointBytes;
+        try {
+            this.wal = new WriteAheadLog(this.dir, this.fsync, commitIntervalMs);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open write-ahead log in " + this.dir, e);
+        }
+        long tick = Math.min(10_000L, checkpointIntervalMs);
+        scheduler.scheduleWithFixedDelay(this::maybeCheckpoint, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /** An accepted suggestion: per-user count, plus the phrase (and its n-grams) or the single word. */
+    public void accept(String userId, String selected) {
+        if (selected == null || selected.isBlank()) return;
+        long now = System.currentTimeMillis();
+        CompletableFuture<Void> written;
+        synchronized (this) {
+            if (userId != null && !userId.isBlank()) {
+                String key = userStore.increment(userId, selected);
+                noteUser(userId, key, 1);
+                append("U\t" + now + "\t" + key + "\t" + userId);
+            }
+            if (applyPhrase(selected, 1)) {
+                notePhrase(selected, 1);
+                written = append("P\t" + now + "\t1\t" + selected);
+            } else {
+                trie.recordUse(selected, 1, now);
+                noteWord(selected, 1, trie.logWeight(1, now), now);
+                written = append("W\t" + now + "\t1\t" + selected);
+            }
+            eventsSinceCheckpoint++;
+        }
+        if (fsync == WriteAheadLog.Fsync.ALWAYS) {
+            try { written.join(); } catch (Exception e) { System.err.println("[WAL] commit failed: " + e.getMessage()); }
+        }
+    }
+
+    /** Apply the last checkpoint and the log after it. Call once, after the static dictionary is loaded. */
+    public synchronized void replay() {
+        if (replayed) return;
+        replayed = true;
+        long start = System.currentTimeMillis();
+        long fromSegment = 0;
+        try {
+            // already in the file, so applied but not noted; only the log after it is pending
+            Checkpoint c = readCheckpoint();
+            fromSegment = c.segment;
+            for (WordDelta d : c.words.values()) trie.applyLearned(d.word, d.count, d.logScore, d.lastTouched);
+            for (Map.Entry<String, Long> e : c.phrases.entrySet()) applyPhrase(e.getKey(), e.getValue());
+            for (Map.Entry<String, Map<String, Integer>> u : c.users.entrySet()) {
+                for (Map.Entry<String, Integer> e : u.getValue().entrySet()) userStore.add(u.getKey(), e.getKey(), e.getValue());
+            }
+            long records = wal.replay(fromSegment, this::replayRecord);
+            eventsSinceCheckpoint += records;
+            System.out.println("[LearningService] replayed checkpoint + " + records + " log records in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            System.err.println("[LearningService] replay failed: " + e.getMessage());
+        }
+    }
+
+    // caller holds this
+    private void replayRecord(byte[] payload) {
+        String[] f = new String(payload, StandardCharsets.UTF_8).split("\t", 4);
+        if (f.length < 4) return;
+        try {
+            long at = Long.parseLong(f[1]);
+            switch (f[0]) {
+                case "W" -> {
+                    long count = Long.parseLong(f[2]);
+                    double ls = trie.logWeight(count, at);
+                    trie.applyLearned(f[3], count, ls, at);
+                    noteWord(f[3], count, ls, at);
+                }
+                case "P" -> {
+                    long count = Long.parseLong(f[2]);
+                    applyPhrase(f[3], count);
+                    notePhrase(f[3], count);
+                }
+                case "U" -> {
+                    userStore.add(f[3], f[2], 1);
+                    noteUser(f[3], f[2], 1);
+                }
+                default -> { }
+            }
+        } catch (NumberFormatException ignored) {}
+    }
+
+    /** Fold the deltas since the last checkpoint into checkpoint.json and drop the log segments it covers. */
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            long start = System.currentTimeMillis();
+            Checkpoint taken = new Checkpoint();
+            try {
+                synchronized (this) {
+                    // rotate + take atomically w.r.t. accept(): the deltas taken are exactly the older segments
+                    taken.segment = wal.rotate();
+                    taken.words = words;
+                    taken.phrases = phrases;
+                    taken.users = users;
+                    words = new HashMap<>();
+                    phrases = new HashMap<>();
+                    users = new HashMap<>();
+                    eventsSinceCheckpoint = 0;
+                    lastCheckpointMillis = start;
+                }
+            } catch (IOException e) {
+                System.err.println("[LearningService] checkpoint failed: " + e.getMessage());
+                return;
+            }
+            try {
+                Checkpoint c = readCheckpoint();
+                c.segment = taken.segment;
+                fold(taken, c.words, c.phrases, c.users);
+                Path tmp = dir.resolve("checkpoint.json.tmp");
+                mapper.writeValue(tmp.toFile(), c);
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ch.force(true);
+                }
+                Files.move(tmp, dir.resolve("checkpoint.json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                wal.deleteBefore(c.segment);
+                if (meterRegistry != null) meterRegistry.timer("autocomplete.wal.checkpoint").record(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                System.err.println("[LearningService] checkpoint failed: " + e.getMessage());
+                // nothing was deleted: put the deltas back so the next checkpoint writes them
+                synchronized (this) {
+                    fold(taken, words, phrases, users);
+                    eventsSinceCheckpoint++;
+                }
+            }
+        }
+    }
+
+    private Checkpoint readCheckpoint() throws IOException {
+        Path cp = dir.resolve("checkpoint.json");
+        return Files.exists(cp) ? mapper.readValue(cp.toFile(), Checkpoint.class) : new Checkpoint();
+    }
+
+    // add one batch of deltas to another
+    private static void fold(Checkpoint from, Map<String, WordDelta> words, Map<String, Long> phrases,
+                             Map<String, Map<String, Integer>> users) {
+        from.words.forEach((key, d) -> mergeWord(words, key, d.word, d.count, d.logScore, d.lastTouched));
+        from.phrases.forEach((key, n) -> phrases.merge(key, n, Long::sum));
+        from.users.forEach((u, m) -> {
+            Map<String, Integer> into = users.computeIfAbsent(u, k -> new HashMap<>());
+            m.forEach((key, n) -> into.merge(key, n, Integer::sum));
+        });
+    }
+
+    private void maybeCheckpoint() {
+        boolean due;
+        synchronized (this) {
+            due = replayed && eventsSinceCheckpoint > 0
+                    && (System.currentTimeMillis() - lastCheckpointMillis >= checkpointIntervalMs
+                        || wal.bytesInSegment() >= checkpointBytes);
+        }
+        if (due) checkpoint();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        boolean dirty;
+        synchronized (this) { dirty = replayed && eventsSinceCheckpoint > 0; }
+        if (dirty) checkpoint();
+        try { wal.close(); } catch (IOException e) { System.err.println("[WAL] close failed: " + e.getMessage()); }
+    }
+
+    // phrases feed the phrase index and the bigrams inside them
+    private boolean applyPhrase(String phrase, long count) {
+        if (!phraseIndex.add(phrase, count)) return false;
+        List<TextNormalizer.Token> tokens = normalizer.tokenize(phrase);
+        for (int i = 0; i + 1 < tokens.size(); i++) {
+            nGramService.addBigram(tokens.get(i).key, tokens.get(i + 1).key, count);
+        }
+        return true;
+    }
+
+    private CompletableFuture<Void> append(String record) {
+        if (meterRegistry != null) meterRegistry.counter("autocomplete.wal.events", "type", record.substring(0, 1)).increment();
+        return wal.append(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void noteWord(String word, long count, double logScore, long at) {
+        mergeWord(words, normalizer.normalize(word), word.strip(), count, logScore, at);
+    }
+
+    private static void mergeWord(Map<String, WordDelta> words, String key, String word, long count, double logScore, long at) {
+        WordDelta d = words.computeIfAbsent(key, k -> new WordDelta());
+        if (d.word == null) d.word = word;
+        d.count += count;
+        d.logScore = FrequencyAwareTrie.logAddExp(d.logScore, logScore);
+        d.lastTouched = Math.max(d.lastTouched, at);
+    }
+
+    private void notePhrase(String phrase, long count) {
+        phrases.merge(normalizer.normalizeContext(phrase), count, Long::sum);
+    }
+
+    private void noteUser(String userId, String key, int count) {
+        users.computeIfAbsent(userId, k -> new HashMap<>()).merge(key, count, Integer::sum);
+    }
+}
@@ -0,0 +1,166 @@
+package com.FODS_CP.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adaptive concurrency limit in front of the suggest and spellcheck endpoints.
+ *
+ * The limit follows AIMD on observed latency: a request counts as slow when it
+ * takes longer than both the target latency and twice the no-load latency.
+ * Every fast request grows the limit by 1/limit and every slow one shrinks it
+ * by 10%.
+ *
+ * The no-load latency is the minimum over a window (Vegas-style min RTT):
+ * the current window and the last complete one. Only fast, full-level samples
+ * go into it. A window that saw none keeps the previous baseline, so sustained
+ * overload cannot drag the baseline up until the limit grows back.
+ *
+ * Every finished request reports its latency, so the bookkeeping is lock-free:
+ * the limit is CAS-updated and the window is an immutable object swapped on
+ * rollover, with the running minimum in an AtomicLong.
+ *
+ * How full the limit is decides how much work a request may do:
+ *
+ *   FULL             - all stages
+ *   NO_CORRECTIONS   - skip fuzzy matching and did-you-mean (the expensive part)
+ *   COMPLETIONS_ONLY - trie completions only
+ *   (no permit)      - cache-only: hits never need a permit, misses are shed (503)
+ *
+ * Degraded results are not cached so they do not outlive the overload.
+ */
+@Component
+public class LoadShedder {
+
+    public enum Level { FULL, NO_CORRECTIONS, COMPLETIONS_ONLY }
+
+    private final MeterRegistry meterRegistry;
+    private final long targetLatencyNanos;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits = new AtomicLong(); // the limit as Double bits
+    private final long windowNanos;
+    private final AtomicReference<Window> window;
+
+    // no-load latency: min of the last complete window (0 = none yet) and of this one
+    private static final class Window {
+        final long startNanos;
+        final long baselineNanos;
+        final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+
+        Window(long startNanos, long baselineNanos) {
+            this.startNanos = startNanos;
+            this.baselineNanos = baselineNanos;
+        }
+
+        long noLoad() {
+            return Math.min(baselineNanos == 0 ? Long.MAX_VALUE : baselineNanos, minNanos.get());
+        }
+    }
+
+    @Autowired
+    public LoadShedder(MeterRegistry meterRegistry,
+                       @Value("${autocomplete.admission.target-latency-ms:50}") long targetLatencyMs,
+                       @Value("${autocomplete.admission.min-limit:4}") int minLimit,
+                       @Value("${autocomplete.admission.max-limit:256}") int maxLimit,
+                       @Value("${autocomplete.admission.initial-limit:32}") int initialLimit,
+                       @Value("${autocomplete.admission.baseline-window-seconds:30}") long baselineWindowSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.targetLatencyNanos = targetLatencyMs * 1_000_000L;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limitBits.set(Double.doubleToLongBits(Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit))));
+        this.windowNanos = Math.max(1, baselineWindowSeconds) * 1_000_000_000L;
+        this.window = new AtomicReference<>(new Window(System.nanoTime(), 0));
+        if (meterRegistry != null) {
+            Gauge.builder("autocomplete.admission.limit", this, LoadShedder::getLimit).register(meterRegistry);
+            Gauge.builder("autocomplete.admission.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+            Gauge.builder("autocomplete.admission.baseline.ms", this, s -> s.getBaselineNanos() / 1e6).register(meterRegistry);
+        }
+    }
+
+    /** A granted slot; close it when the request is done so its latency feeds the limit. */
+    public final class Permit implements AutoCloseable {
+        public final Level level;
+        private final long startNanos = System.nanoTime();
+        private boolean closed;
+
+        private Permit(Level level) { this.level = level; }
+
+        public boolean allowsCorrections() { return level == Level.FULL; }
+        public boolean allowsRanking() { return level != Level.COMPLETIONS_ONLY; }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            inFlight.decrementAndGet();
+            long now = System.nanoTime();
+            onSample(now - startNanos, level, now);
+        }
+    }
+
+    /** Returns a permit, or null when the request should be shed. Check the cache before calling this. */
+    public Permit tryAcquire(String endpoint) {
+        int cur = inFlight.incrementAndGet();
+        double lim = getLimit();
+        if (cur > lim) {
+            inFlight.decrementAndGet();
+            if (meterRegistry != null) meterRegistry.counter("autocomplete.admission.shed", "endpoint", endpoint).increment();
+            return null;
+        }
+        double utilization = cur / lim;
+        Level level = utilization <= 0.6 ? Level.FULL
+                : utilization <= 0.85 ? Level.NO_CORRECTIONS
+                : Level.COMPLETIONS_ONLY;
+        if (level != Level.FULL && meterRegistry != null) {
+            meterRegistry.counter("autocomplete.admission.degraded", "endpoint", endpoint, "level", level.name()).increment();
+        }
+        return new Permit(level);
+    }
+
+    // package-private with an explicit clock for tests
+    void onSample(long rttNanos, Level level, long nowNanos) {
+        Window w = window.get();
+        if (nowNanos - w.startNanos >= windowNanos) {
+            long min = w.minNanos.get(); // none: keep the last clean baseline
+            window.compareAndSet(w, new Window(nowNanos, min != Long.MAX_VALUE ? min : w.baselineNanos));
+            w = window.get(); // ours or the one a racing sample installed
+        }
+        long noLoad = w.noLoad();
+        if (noLoad == Long.MAX_VALUE) noLoad = rttNanos;
+        boolean slow = rttNanos > Math.max(targetLatencyNanos, 2 * noLoad);
+        // degraded work is cheaper than a real no-load request, and slow samples are not "no load"
+        if (!slow && level == Level.FULL) w.minNanos.accumulateAndGet(rttNanos, Math::min);
+        long prev, next;
+        do {
+            prev = limitBits.get();
+            double limit = Double.longBitsToDouble(prev);
+            double updated = slow ? Math.max(minLimit, limit * 0.9) : Math.min(maxLimit, limit + 1.0 / limit);
+            next = Double.doubleToLongBits(updated);
+        } while (!limitBits.compareAndSet(prev, next));
+    }
+
+    /** Current no-load latency estimate in nanoseconds, 0 before the first clean sample. */
+    public long getBaselineNanos() {
+        long noLoad = window.get().noLoad();
+        return noLoad == Long.MAX_VALUE ? 0 : noLoad;
+    }
+
+    public double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -32,8 +32,13 @@ public class NGramService {
         @Override public String toString(){ return word + ":" + count; }
     }
 
-    // map: context token (lower) -> map(nextWord -> count)
+    // map: context token (normalized) -> map(nextWord (normalized) -> count)
     private final Map<String, Map<String, Long>> nextWordMap = new ConcurrentHashMap<>();
+    private final TextNormalizer normalizer;
+
+    public NGramService(TextNormalizer normalizer) {
+        this.normalizer = normalizer;
+    }
 
     @PostConstruct
     public void init() {
@@ -54,8 +59,8 @@ public class NGramService {
                     if (line.isEmpty() || line.startsWith("#")) continue;
                     String[] parts = line.split(",");
                     if (parts.length < 3) continue;
-                    String ctx = parts[0].trim().toLowerCase();
-                    String next = parts[1].trim();
+                    String ctx = parts[0];
+                    String next = parts[1];
                     long cnt = 1;
                     try { cnt = Long.parseLong(parts[2].trim()); } catch (Exception ignored) {}
                     addBigram(ctx, next, cnt);
@@ -86,13 +91,14 @@ public class NGramService {
 
     /**
      * Adds or increments a bigram count.
-     * contextToken should be a single token (lowercase recommended).
+     * Both tokens are normalized, so callers may pass raw text.
      */
     public void addBigram(String contextToken, String nextWord, long count) {
         if (contextToken == null || contextToken.isBlank() || nextWord == null || nextWord.isBlank()) return;
-        String key = contextToken.trim().toLowerCase();
+        String key = normalizer.normalize(contextToken);
+        String next = normalizer.normalize(nextWord);
         nextWordMap.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
-                .merge(nextWord, Math.max(1, count), Long::sum);
+                .merge(next, Math.max(1, count), Long::sum);
     }
 
     /**
@@ -101,9 +107,8 @@ public class NGramService {
      */
     public List<Candidate> getNextWordCandidates(String context, int limit) {
         if (context == null || context.isBlank()) return Collections.emptyList();
-        String[] parts = context.trim().split("\\s+");
-        if (parts.length == 0) return Collections.emptyList();
-        String last = parts[parts.length - 1].toLowerCase();
+        String last = normalizer.lastToken(context);
+        if (last.isEmpty()) return Collections.emptyList();
         Map<String, Long> map = nextWordMap.get(last);
         if (map == null || map.isEmpty()) return Collections.emptyList();
 
@@ -114,6 +119,14 @@ public class NGramService {
                 .toList();
     }
 
+    /** Count of one bigram, both tokens already normalized; 0 when unseen. */
+    public long bigramCount(String contextKey, String nextKey) {
+        Map<String, Long> map = nextWordMap.get(contextKey);
+        if (map == null) return 0;
+        Long c = map.get(nextKey);
+        return c == null ? 0 : c;
+    }
+
     /** Expose internal map snapshot for debug */
     public Map<String, Map<String, Long>> getSnapshot() {
         Map<String, Map<String, Long>> out = new HashMap<>();
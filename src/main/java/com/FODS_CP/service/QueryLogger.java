@@ -0,0 +1,157 @@
+package com.FODS_CP.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampled capture of real /api/suggest and /api/accept traffic as JSON lines,
+ * for replay with tools.QueryReplay. Off by default (autocomplete.querylog.enabled).
+ *
+ * The request thread only rolls the sampling dice and offers a small record to
+ * a bounded queue; it never blocks and never touches the file. When the queue is
+ * full the record is dropped and counted (autocomplete.querylog.dropped). One
+ * daemon thread serializes and writes in batches. The file is rotated to
+ * <path>.1 once it reaches max-bytes.
+ *
+ * One line per request, e.g.
+ *   {"ts":1700000000000,"type":"suggest","q":"how are y","context":"","limit":6,"userId":"u1"}
+ *   {"ts":1700000000450,"type":"accept","userId":"u1","selected":"how are you"}
+ */
+@Service
+public class QueryLogger {
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final Path path;
+    private final long maxBytes;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /** One logged request; also what QueryReplay reads back. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+        public long ts;
+        public String type; // suggest | accept
+        public String q;
+        public String context;
+        public Integer limit;
+        public String userId;
+        public String category;
+        public Boolean group;
+        public String dict;
+        public String selected;
+    }
+
+    @Autowired
+    public QueryLogger(MeterRegistry meterRegistry,
+                       @Value("${autocomplete.querylog.enabled:false}") boolean enabled,
+                       @Value("${autocomplete.querylog.sample-rate:0.01}") double sampleRate,
+                       @Value("${autocomplete.querylog.path:data/querylog/queries.jsonl}") String path,
+                       @Value("${autocomplete.querylog.queue-size:10000}") int queueSize,
+                       @Value("${autocomplete.querylog.max-bytes:268435456}") long maxBytes) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled && sampleRate > 0;
+        this.sampleRate = Math.min(1.0, sampleRate);
+        this.path = Path.of(path).toAbsolutePath();
+        this.maxBytes = maxBytes;
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, queueSize));
+        if (this.enabled) {
+            this.writer = new Thread(this::writeLoop, "querylog-writer");
+            writer.setDaemon(true);
+            writer.start();
+            System.out.println("[QueryLogger] sampling " + this.sampleRate + " of requests to " + this.path);
+        } else {
+            this.writer = null;
+        }
+    }
+
+    public void suggest(String q, String context, int limit, String userId, String category, boolean group, String dict) {
+        if (!sampled()) return;
+        Entry e = new Entry();
+        e.ts = System.currentTimeMillis();
+        e.type = "suggest";
+        e.q = q; e.context = context; e.limit = limit; e.userId = userId;
+        e.category = category; e.group = group ? Boolean.TRUE : null; e.dict = dict;
+        offer(e);
+    }
+
+    public void accept(String userId, String selected) {
+        if (!sampled()) return;
+        Entry e = new Entry();
+        e.ts = System.currentTimeMillis();
+        e.type = "accept";
+        e.userId = userId; e.selected = selected;
+        offer(e);
+    }
+
+    private boolean sampled() {
+        return enabled && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private void offer(Entry e) {
+        if (!queue.offer(e) && meterRegistry != null) meterRegistry.counter("autocomplete.querylog.dropped").increment();
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(256);
+        BufferedWriter out = null;
+        try {
+            Files.createDirectories(path.getParent());
+            out = open();
+            while (running || !queue.isEmpty()) {
+                Entry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, 1023);
+                for (Entry e : batch) {
+                    out.write(mapper.writeValueAsString(e));
+                    out.newLine();
+                }
+                out.flush();
+                if (meterRegistry != null) meterRegistry.counter("autocomplete.querylog.written").increment(batch.size());
+                batch.clear();
+                if (maxBytes > 0 && Files.size(path) >= maxBytes) {
+                    out.close();
+                    Files.move(path, path.resolveSibling(path.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+                    out = open();
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            System.err.println("[QueryLogger] stopped: " + e.getMessage());
+        } finally {
+            if (out != null) try { out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private BufferedWriter open() throws IOException {
+        return Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer != null) {
+            try { writer.join(2000); } catch (InterruptedException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.Controller.CachedResponse;
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Startup warm-up, run after FrequencyCsvLoader has built the trie and replayed
+ * the learned updates, and before the app reports ready.
+ *
+ * Replays the most frequent prefixes of the vocabulary (the first 1..4 characters
+ * of the top words, ranked by the total frequency behind them) through the full
+ * suggest pipeline a few times. That gets the hot paths JIT-compiled and leaves
+ * the suggestion cache holding exactly the queries real users type first. It
+ * goes straight to the pipeline, so warm-up shows up in neither the request
+ * metrics, the load shedder's latency samples nor the query log.
+ *
+ * The cache entries are not refreshed: CacheConfig expires every entry 10
+ * minutes after it was written, warmed ones included, so they only cover the
+ * first minutes of traffic. By then real requests have put the prefixes users
+ * actually type back in. The JIT part of the warm-up does not expire.
+ *
+ * Until it is done this bean reports OUT_OF_SERVICE as the "warmup" health
+ * indicator, which is part of the readiness group, and ReadinessGateFilter
+ * answers /api requests with 503.
+ */
+@Component("warmup")
+@Order(100) // after FrequencyCsvLoader
+public class StartupWarmup implements ApplicationRunner, HealthIndicator {
+
+    private final FrequencyAwareTrie trie;
+    private final SuggestPipeline pipeline;
+    private final Cache<String, Object> suggestionCache;
+    private final ObjectMapper objectMapper;
+    private final ApplicationContext context;
+    private final boolean enabled;
+    private final int topWords;
+    private final int maxPrefixes;
+    private final int iterations;
+    private final long maxMillis;
+
+    private volatile String state = "pending";
+    private volatile int prefixesWarmed;
+    private volatile long runs;
+    private volatile long tookMs;
+
+    @Autowired
+    public StartupWarmup(FrequencyAwareTrie trie, SuggestPipeline pipeline, Cache<String, Object> suggestionCache,
+                         ObjectMapper objectMapper, ApplicationContext context,
+                         @Value("${autocomplete.warmup.enabled:true}") boolean enabled,
+                         @Value("${autocomplete.warmup.top-words:2000}") int topWords,
+                         @Value("${autocomplete.warmup.prefixes:1000}") int maxPrefixes,
+                         @Value("${autocomplete.warmup.iterations:3}") int iterations,
+                         @Value("${autocomplete.warmup.max-seconds:30}") long maxSeconds) {
+        this.trie = trie;
+        this.pipeline = pipeline;
+        this.suggestionCache = suggestionCache;
+        this.objectMapper = objectMapper;
+        this.context = context;
+        this.enabled = enabled;
+        this.topWords = Math.max(1, topWords);
+        this.maxPrefixes = Math.max(1, maxPrefixes);
+        this.iterations = Math.max(1, iterations);
+        this.maxMillis = Math.max(1, maxSeconds) * 1000L;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // boot only flips readiness once all runners are done; say so explicitly in case a runner is slow
+        AvailabilityChangeEvent.publish(context, ReadinessState.REFUSING_TRAFFIC);
+        if (!enabled) {
+            state = "skipped";
+            return;
+        }
+        state = "running";
+        long start = System.currentTimeMillis();
+        List<String> prefixes = hotPrefixes();
+        prefixesWarmed = prefixes.size();
+        long deadline = start + maxMillis;
+        outer:
+        for (int pass = 0; pass < iterations; pass++) {
+            for (String p : prefixes) {
+                if (System.currentTimeMillis() > deadline) break outer;
+                warm(p);
+            }
+        }
+        tookMs = System.currentTimeMillis() - start;
+        state = "done";
+        System.out.println("[Warmup] " + runs + " pipeline runs over " + prefixes.size() + " prefixes in " + tookMs
+                + " ms; cache holds " + suggestionCache.estimatedSize() + " entries");
+    }
+
+    // same work and cache entry as a /api/suggest miss with default parameters, then the hit path
+    private void warm(String prefix) {
+        try {
+            SuggestPipeline.Run run = pipeline.newRun(prefix, null, 6, null);
+            pipeline.completions(run);
+            pipeline.ranked(run);
+            List<Suggestion> out = pipeline.corrections(run);
+            CachedResponse encoded = CachedResponse.encode(objectMapper, out, pipeline.didYouMean(run));
+            suggestionCache.put(run.cacheKey(), encoded);
+            encoded.json(run.prefix, 0);
+            runs++;
+        } catch (RuntimeException e) {
+            System.err.println("[Warmup] '" + prefix + "' failed: " + e.getMessage());
+        }
+    }
+
+    // first 1..4 characters of the most frequent words, by the frequency they lead to
+    private List<String> hotPrefixes() {
+        List<FrequencyAwareTrie.Entry> entries = trie.entries();
+        entries.sort(Comparator.comparingLong((FrequencyAwareTrie.Entry e) -> e.freq).reversed());
+        Map<String, Long> weight = new HashMap<>();
+        for (FrequencyAwareTrie.Entry e : entries.subList(0, Math.min(topWords, entries.size()))) {
+            int n = e.key.codePointCount(0, e.key.length());
+            for (int len = 1; len <= Math.min(4, n); len++) {
+                weight.merge(e.key.substring(0, e.key.offsetByCodePoints(0, len)), e.freq, Long::sum);
+            }
+        }
+        List<String> out = new ArrayList<>(weight.keySet());
+        out.sort(Comparator.comparingLong((String p) -> weight.get(p)).reversed());
+        return out.size() > maxPrefixes ? new ArrayList<>(out.subList(0, maxPrefixes)) : out;
+    }
+
+    public boolean isDone() {
+        return "done".equals(state) || "skipped".equals(state);
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder b = isDone() ? Health.up() : Health.outOfService();
+        return b.withDetail("state", state)
+                .withDetail("prefixes", prefixesWarmed)
+                .withDetail("runs", runs)
+                .withDetail("tookMs", tookMs)
+                .build();
+    }
+}
@@ -0,0 +1,377 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.NamedDictionary;
+import com.FODS_CP.data.PhraseIndex;
+import com.FODS_CP.data.UserStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * The suggest pipeline split into stages so callers can run it in one go
+ * (/api/suggest) or publish each stage as soon as it is ready (/api/suggest/stream).
+ *
+ * Stages, cheapest first:
+ *  1. completions - phrase completions for the context (PhraseIndex), then exact
+ *                   prefix completions from the trie, ranked by frequency
+ *  2. ranked      - trie + n-gram candidates merged and re-scored
+ *  3. corrections - fuzzy candidates merged in, final ranking + did-you-mean
+ *
+ * Running all three stages on one {@link Run} gives the same result as the old
+ * single-method suggest.
+ *
+ * A run against a named dictionary (DictionaryRegistry) reads completions and
+ * fuzzy hits from that dictionary instead; phrases, n-grams and categories only
+ * exist for the default dictionary and are skipped.
+ */
+@Service
+public class SuggestPipeline {
+
+    private final FrequencyAwareTrie trie;
+    private final PhraseIndex phraseIndex;
+    private final NGramService nGramService;
+    private final UserStore userStore;
+    private final TextNormalizer normalizer;
+    private final int maxResults;
+    private final int maxCandidates;
+
+    @Autowired
+    public SuggestPipeline(FrequencyAwareTrie trie, PhraseIndex phraseIndex, NGramService nGramService, UserStore userStore, TextNormalizer normalizer,
+                           @Value("${autocomplete.limits.max-results:50}") int maxResults,
+                           @Value("${autocomplete.limits.max-candidates:400}") int maxCandidates) {
+        this.trie = trie;
+        this.phraseIndex = phraseIndex;
+        this.nGramService = nGramService;
+        this.userStore = userStore;
+        this.normalizer = normalizer;
+        this.maxResults = Math.max(1, maxResults);
+        this.maxCandidates = Math.max(this.maxResults, maxCandidates);
+    }
+
+    /** Start a request; the query and context are normalized here, once, and limit is clamped. */
+    public Run newRun(String q, String context, int limit, String userId) {
+        return newRun(q, context, limit, userId, -1);
+    }
+
+    /** Same, restricted to one CategoryService id (-1 for all categories). */
+    public Run newRun(String q, String context, int limit, String userId, int category) {
+        return newRun(q, context, limit, userId, category, null);
+    }
+
+    /** Same, against a named dictionary (null for the default one). */
+    public Run newRun(String q, String context, int limit, String userId, int category, NamedDictionary dictionary) {
+        int clamped = limit <= 0 ? 6 : Math.min(limit, maxResults);
+        return new Run(q, context, clamped, userId, category, dictionary, normalizer);
+    }
+
+    /** Per-request state carried from one stage to the next. */
+    public static class Run {
+        public final String prefix;
+        public final String ctx;
+        public final String key;    // normalized prefix
+        public final String ctxKey; // normalized context
+        // a query that spans several words ("how are y") is split into head + the token being typed
+        public final String head;    // display text before the partial token: context + earlier query words
+        public final String headKey; // normalized head
+        public final String tail;    // normalized partial token; same as key for one-word queries
+        public final int limit;
+        public final String userId;
+        public final int category; // -1 = no filter
+        public final NamedDictionary dictionary; // null = the default trie
+        private List<Suggestion> trieCandidates;
+        private List<NGramService.Candidate> ng;
+        private final Map<String, Suggestion> bucket = new HashMap<>();
+        // edit distance of fuzzy hits by bucket key, so scoring does not run Levenshtein again
+        private final Map<String, Integer> fuzzyDistance = new HashMap<>();
+        private List<FrequencyAwareTrie.FuzzyMatch> fuzzy;
+        // optional precomputed inputs (e.g. from a keystroke session) that replace the trie lookups
+        private List<Suggestion> presetCompletions;
+        private List<FrequencyAwareTrie.FuzzyMatch> presetFuzzy;
+
+        private Run(String q, String context, int limit, String userId, int category, NamedDictionary dictionary, TextNormalizer normalizer) {
+            this.prefix = (q == null) ? "" : q.trim();
+            this.ctx = (context == null) ? "" : context.trim();
+            this.key = normalizer.normalize(prefix);
+            this.ctxKey = normalizer.normalizeContext(ctx);
+            int sp = prefix.lastIndexOf(' ');
+            if (sp < 0) {
+                this.head = ctx; this.headKey = ctxKey; this.tail = key;
+            } else {
+                String typed = prefix.substring(0, sp).trim();
+                this.head = ctx.isEmpty() ? typed : ctx + " " + typed;
+                this.headKey = normalizer.normalizeContext(head);
+                this.tail = normalizer.normalize(prefix.substring(sp + 1));
+            }
+            this.limit = limit;
+            this.userId = userId;
+            this.category = category;
+            this.dictionary = dictionary;
+        }
+
+        public Run withPresetCompletions(List<Suggestion> completions) { this.presetCompletions = completions; return this; }
+        public Run withPresetFuzzy(List<FrequencyAwareTrie.FuzzyMatch> fuzzy) { this.presetFuzzy = fuzzy; return this; }
+
+        public String cacheKey() {
+            return "s:" + key + "|c:" + ctxKey + "|l:" + limit + "|u:" + (userId == null ? "" : userId) + "|k:" + category;
+        }
+
+        // presets were computed for the whole key over every category
+        private boolean presetsApply() {
+            return tail.equals(key) && category < 0;
+        }
+    }
+
+    // empty prefix -> next-word candidates (whole phrase continuations first)
+    public List<Suggestion> nextWords(Run run) {
+        if (run.dictionary != null) {
+            // no n-gram model for named dictionaries: its most frequent words
+            List<Suggestion> out = run.dictionary.complete("", run.limit);
+            for (Suggestion s : out) s.setScore(computeScore(frequencyPart(s), 0.0, 1.0, 0.0));
+            return out;
+        }
+        List<NGramService.Candidate> candidates = nGramService.getNextWordCandidates(run.ctxKey, Math.max(run.limit * 2, 10));
+        List<Suggestion> out = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (PhraseIndex.Match m : phraseIndex.complete(run.ctxKey, "", Math.max(run.limit * 2, 10))) {
+            if (!inCategory(run, m.continuation)) continue;
+            seen.add(m.continuation);
+            Suggestion s = new Suggestion(run.ctx + " " + m.continuation, m.count);
+            s.setScore(computeScore(frequencyPart(s), Math.log(m.count + 1e-9), 1.0, 0.0));
+            out.add(s);
+        }
+        for (NGramService.Candidate c : candidates) {
+            if (c == null || c.word == null || seen.contains(c.word) || !inCategory(run, c.word)) continue;
+            String phrase = run.ctx.isEmpty() ? c.word : (run.ctx + " " + c.word);
+            double cnt = getCandidateCountSafe(c);
+            long freqProxy = Math.max(1, Math.round(cnt));
+            Suggestion s = new Suggestion(phrase, freqProxy);
+            double ngramScore = getCandidateProbSafe(c);
+            double score = computeScore(frequencyPart(s), Math.log(ngramScore + 1e-9), 1.0, 0.0);
+            s.setScore(score);
+            out.add(s);
+        }
+        out.sort((a,b) -> Double.compare(b.getScore(), a.getScore()));
+        return out.size() > run.limit ? out.subList(0, run.limit) : out;
+    }
+
+    /** Candidate fan-out used for the trie stage, exposed so callers that feed presets fetch the same amount. */
+    public int completionFetchSize(int limit) {
+        return Math.min(Math.max(limit * 8, 30), maxCandidates);
+    }
+
+    // stage 1: phrase index + trie, no scoring beyond frequency
+    public List<Suggestion> completions(Run run) {
+        List<Suggestion> out = new ArrayList<>();
+        for (Suggestion s : phrases(run, completionFetchSize(run.limit))) {
+            if (out.size() < run.limit) out.add(copyOf(s));
+        }
+        run.trieCandidates = run.presetCompletions != null && run.presetsApply()
+                ? run.presetCompletions
+                : run.dictionary != null
+                ? run.dictionary.complete(run.tail, completionFetchSize(run.limit))
+                : trie.getSuggestionsForKey(run.tail, completionFetchSize(run.limit), run.category);
+        if (run.trieCandidates != null) {
+            // trie hits complete the last token; key and show them after the head like phrase and fuzzy hits
+            List<Suggestion> withHead = new ArrayList<>(run.trieCandidates.size());
+            for (Suggestion s : run.trieCandidates) {
+                if (s == null || s.getText() == null) continue;
+                Suggestion c = run.head.isEmpty() ? s : copyOf(s, run.head + " " + s.getText());
+                String wordKey = normalizer.normalize(s.getText());
+                run.bucket.put(run.headKey.isEmpty() ? wordKey : run.headKey + " " + wordKey, c);
+                withHead.add(c);
+            }
+            run.trieCandidates = withHead;
+            for (Suggestion s : run.trieCandidates) {
+                if (out.size() >= run.limit) break;
+                out.add(copyOf(s));
+            }
+        }
+        return out;
+    }
+
+    // multi-word completions of context + prefix, one lookup in the phrase index
+    private List<Suggestion> phrases(Run run, int fetch) {
+        if (run.headKey.isEmpty() || run.dictionary != null) return Collections.emptyList();
+        List<Suggestion> out = new ArrayList<>();
+        for (PhraseIndex.Match m : phraseIndex.complete(run.headKey, run.tail, fetch)) {
+            if (!inCategory(run, m.continuation)) continue;
+            Suggestion s = new Suggestion(run.head + " " + m.continuation, m.count);
+            run.bucket.putIfAbsent(run.headKey + " " + m.continuation, s);
+            out.add(s);
+        }
+        return out;
+    }
+
+    // stage 2: merge n-gram next words that match the prefix and score everything
+    public List<Suggestion> ranked(Run run) {
+        // the word before the token being typed, whether it came from the context or the query
+        run.ng = run.dictionary != null ? null : nGramService.getNextWordCandidates(run.headKey, 20);
+        if (run.ng != null) {
+            for (NGramService.Candidate c : run.ng) {
+                if (c == null || c.word == null) continue;
+                String nextWord = c.word; // already normalized by NGramService
+                if (!nextWord.startsWith(run.tail) || !inCategory(run, nextWord)) continue;
+                String phrase = run.head.isEmpty() ? nextWord : (run.head + " " + nextWord);
+                String phraseKey = run.headKey.isEmpty() ? nextWord : (run.headKey + " " + nextWord);
+                if (!run.bucket.containsKey(phraseKey)) {
+                    long fp = Math.max(1, Math.round(getCandidateCountSafe(c)));
+                    run.bucket.put(phraseKey, new Suggestion(phrase, fp));
+                }
+            }
+        }
+        return scoreBucket(run);
+    }
+
+    // stage 3: merge fuzzy neighbours and produce the final ranking
+    public List<Suggestion> corrections(Run run) {
+        if (run.trieCandidates == null || run.trieCandidates.isEmpty() || run.tail.length() >= 2) {
+            run.fuzzy = run.presetFuzzy != null && run.presetsApply() ? run.presetFuzzy : fuzzyTopK(run);
+            for (FrequencyAwareTrie.FuzzyMatch m : run.fuzzy) {
+                String display = run.head.isEmpty() ? m.word : (run.head + " " + m.word);
+                String displayKey = run.headKey.isEmpty() ? m.key : (run.headKey + " " + m.key);
+                run.bucket.putIfAbsent(displayKey, new Suggestion(display, m.freq));
+                run.fuzzyDistance.putIfAbsent(displayKey, m.distance);
+            }
+        }
+        return scoreBucket(run);
+    }
+
+    // DID-YOU-MEAN from the fuzzy hits of stage 3 (computed here if that stage did not run)
+    public String didYouMean(Run run) {
+        if (run.key.length() < 2 || !run.tail.equals(run.key)) return null;
+        try {
+            List<FrequencyAwareTrie.FuzzyMatch> matches = run.fuzzy != null ? run.fuzzy
+                    : run.dictionary != null ? run.dictionary.fuzzyTopK(run.key, 20) : trie.fuzzyTopK(run.key, 20);
+            return FrequencyAwareTrie.bestCorrection(run.key, matches);
+        } catch (Throwable t) {
+            System.out.println("[DidYouMean] error: " + t.getMessage());
+            return null;
+        }
+    }
+
+    private List<Suggestion> scoreBucket(Run run) {
+        Map<String,Integer> uc = null;
+        if (run.userId != null && !run.userId.isBlank()) {
+            try { uc = userStore.getUser(run.userId); } catch (Throwable ignored) {}
+        }
+
+        List<Suggestion> combined = new ArrayList<>(run.bucket.size());
+        for (Map.Entry<String, Suggestion> e : run.bucket.entrySet()) {
+            Suggestion s = e.getValue();
+            if (s == null) continue;
+            String key = e.getKey();
+            String suffixKey = key.indexOf(' ') >= 0 ? key.substring(key.lastIndexOf(' ') + 1) : key;
+            double ngramScore = findNGramScore(suffixKey, run.ng);
+            Integer d = run.fuzzyDistance.get(key);
+            double fuzzySim = d != null
+                    ? Fuzzy.similarityFromDistance(d, run.tail.codePointCount(0, run.tail.length()), suffixKey.codePointCount(0, suffixKey.length()))
+                    : computeFuzzySim(run.tail, suffixKey);
+            // an edit to what was typed costs as much as in fuzzyTopK, so corrections rank nearest first and
+            // frequency only orders equal distances; a hit that still extends the query needs none
+            double editPenalty = d != null && !suffixKey.startsWith(run.tail) ? FrequencyAwareTrie.DISTANCE_WEIGHT * d : 0.0;
+            double personalBoost = (uc == null) ? 0.0 : uc.getOrDefault(key, 0);
+            if (s.getCategory() == null && run.dictionary == null) {
+                int cat = trie.categoryOf(suffixKey);
+                if (cat >= 0) s.setCategory(trie.getCategories().name(cat));
+            }
+            s.setScore(computeScore(frequencyPart(s), ngramScore, fuzzySim, personalBoost) - editPenalty);
+            combined.add(s);
+        }
+
+        combined.sort((a,b) -> Double.compare(b.getScore(), a.getScore()));
+        return combined.size() > run.limit ? new ArrayList<>(combined.subList(0, run.limit)) : combined;
+    }
+
+    /**
+     * Completions of the partial token grouped by category, each group one walk of
+     * the trie restricted to that category, groups ordered by their best frequency.
+     */
+    public Map<String, List<Suggestion>> groups(Run run) {
+        List<List<Suggestion>> found = new ArrayList<>();
+        for (int id : trie.categoryIds()) {
+            if (run.category >= 0 && id != run.category) continue;
+            List<Suggestion> top = trie.getSuggestionsForKey(run.tail, run.limit, id);
+            if (!top.isEmpty()) found.add(top);
+        }
+        found.sort((a, b) -> Long.compare(b.get(0).getFrequency(), a.get(0).getFrequency()));
+        Map<String, List<Suggestion>> out = new LinkedHashMap<>();
+        for (List<Suggestion> g : found) out.put(g.get(0).getCategory(), g);
+        return out;
+    }
+
+    // helpers
+    private List<FrequencyAwareTrie.FuzzyMatch> fuzzyTopK(Run run) {
+        return run.dictionary != null ? run.dictionary.fuzzyTopK(run.tail, 20) : trie.fuzzyTopK(run.tail, 20, run.category);
+    }
+
+    private boolean inCategory(Run run, String phraseKey) {
+        if (run.category < 0) return true;
+        String last = phraseKey.substring(phraseKey.lastIndexOf(' ') + 1);
+        return trie.categoryOf(last) == run.category;
+    }
+
+    private static Suggestion copyOf(Suggestion s) {
+        return copyOf(s, s.getText());
+    }
+
+    private static Suggestion copyOf(Suggestion s, String text) {
+        Suggestion c = new Suggestion(text, s.getFrequency());
+        c.setCategory(s.getCategory());
+        c.setLastUsedEpochMillis(s.getLastUsedEpochMillis());
+        c.setLogRank(s.getLogRank());
+        return c;
+    }
+
+    private double findNGramScore(String candidate, List<NGramService.Candidate> ng) {
+        if (ng == null) return 0.0;
+        for (NGramService.Candidate c : ng) {
+            if (c == null) continue;
+            if (c.word != null && c.word.equals(candidate)) {
+                double v = getCandidateCountSafe(c);
+                if (v > 0) return Math.log(v + 1);
+                return getCandidateProbSafe(c);
+            }
+        }
+        return 0.0;
+    }
+
+    // trie and n-gram candidates extend the query, so their distance is just the length difference
+    private double computeFuzzySim(String q, String candidate) {
+        if (candidate.startsWith(q)) {
+            int lq = q.codePointCount(0, q.length());
+            int lc = candidate.codePointCount(0, candidate.length());
+            return Fuzzy.similarityFromDistance(lc - lq, lq, lc);
+        }
+        try { return Fuzzy.similarity(q, candidate); } catch (Throwable t) { return 0.0; }
+    }
+
+    // recency lives in the trie's decayed rank; raw counts only for sources that do not decay (n-grams, phrases)
+    private static double frequencyPart(Suggestion s) {
+        return Double.isNaN(s.getLogRank()) ? Math.log(s.getFrequency() + 1) : s.getLogRank();
+    }
+
+    private double computeScore(double freqPart, double ngramProb, double fuzzySim, double personalBoost) {
+        double alpha = 1.0, beta = 1.2, delta = 1.0;
+        double personal = Math.log(1 + personalBoost * 6.0);
+        return alpha * freqPart + beta * ngramProb + delta * fuzzySim + personal;
+    }
+
+    private double getCandidateCountSafe(NGramService.Candidate c) {
+        try { return c.count; } catch (Throwable ignored) {}
+        try {
+            var f = c.getClass().getDeclaredField("count");
+            f.setAccessible(true);
+            Object v = f.get(c);
+            if (v instanceof Number) return ((Number)v).doubleValue();
+        } catch (Throwable ignored) {}
+        return 0.0;
+    }
+
+    private double getCandidateProbSafe(NGramService.Candidate c) {
+        try { return c.count; } catch (Throwable ignored) {}
+        return getCandidateCountSafe(c);
+    }
+}
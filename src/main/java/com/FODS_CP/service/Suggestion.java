@@ -1,10 +1,15 @@
 package com.FODS_CP.service;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class Suggestion implements Comparable<Suggestion> {
     private String text;
     private long frequency;
     private double score;
     private long lastUsedEpochMillis; // 0 if unknown
+    private String category;
+    // ln(static count + decayed usage) when the trie produced this, NaN for sources without decay
+    private double logRank = Double.NaN;
 
     public Suggestion() {}
 
@@ -29,6 +34,13 @@ public class Suggestion implements Comparable<Suggestion> {
         this.lastUsedEpochMillis = lastUsedEpochMillis;
     }
 
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    @JsonIgnore
+    public double getLogRank() { return logRank; }
+    public void setLogRank(double logRank) { this.logRank = logRank; }
+
     @Override
     public int compareTo(Suggestion o) {
         return Double.compare(o.score, this.score); // descending
@@ -41,6 +53,7 @@ public class Suggestion implements Comparable<Suggestion> {
                 ", freq=" + frequency +
                 ", score=" + score +
                 ", lastUsed=" + lastUsedEpochMillis +
+                ", category=" + category +
                 '}';
     }
 }
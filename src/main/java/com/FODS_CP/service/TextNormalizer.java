@@ -0,0 +1,119 @@
+package com.FODS_CP.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Single place that decides what "the same word" means.
+ *
+ * normalize(): NFKC, locale-independent case folding and (optionally) diacritic
+ * folding. The trie, n-grams, user store and cache keys all go through it, so a
+ * query is normalized once per request and every word once at load.
+ *
+ * tokenize(): splits free text into normalized word tokens keeping the original
+ * character offsets.
+ */
+@Component
+public class TextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{Mn}+");
+
+    private final boolean foldDiacritics;
+
+    public TextNormalizer(@Value("${autocomplete.normalize.fold-diacritics:false}") boolean foldDiacritics) {
+        this.foldDiacritics = foldDiacritics;
+    }
+
+    public static class Token {
+        public final String surface;
+        public final String key;
+        public final int start; // char offset into the source text, inclusive
+        public final int end;   // exclusive
+        Token(String surface, String key, int start, int end) { this.surface = surface; this.key = key; this.start = start; this.end = end; }
+    }
+
+    /** Normalized form of a single word or phrase; never null. */
+    public String normalize(String s) {
+        if (s == null) return "";
+        String t = s.strip();
+        // fast path: plain lower-case ASCII is already in normal form, no allocation
+        if (isFoldedAscii(t)) return t;
+        t = Normalizer.normalize(t, Normalizer.Form.NFKC);
+        t = t.toLowerCase(Locale.ROOT);
+        if (foldDiacritics) {
+            t = Normalizer.normalize(t, Normalizer.Form.NFD);
+            t = COMBINING_MARKS.matcher(t).replaceAll("");
+            t = Normalizer.normalize(t, Normalizer.Form.NFC);
+        }
+        return t;
+    }
+
+    /** Normalized context: tokens joined by single spaces. */
+    public String normalizeContext(String s) {
+        if (s == null || s.isBlank()) return "";
+        List<Token> tokens = tokenize(s);
+        if (tokens.size() == 1) return tokens.get(0).key;
+        StringBuilder sb = new StringBuilder();
+        for (Token t : tokens) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(t.key);
+        }
+        return sb.toString();
+    }
+
+    /** Last token of a context string, normalized; "" when there is none. */
+    public String lastToken(String context) {
+        if (context == null) return "";
+        int end = context.length();
+        while (end > 0 && !isWordChar(context.codePointBefore(end))) end -= Character.charCount(context.codePointBefore(end));
+        int start = end;
+        while (start > 0 && isWordChar(context.codePointBefore(start))) start -= Character.charCount(context.codePointBefore(start));
+        return start == end ? "" : normalize(context.substring(start, end));
+    }
+
+    /** Word tokens (letters, digits, marks, apostrophes inside words) with their offsets. */
+    public List<Token> tokenize(String text) {
+        List<Token> out = new ArrayList<>();
+        if (text == null) return out;
+        int i = 0, n = text.length();
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            if (!isWordChar(cp)) { i += Character.charCount(cp); continue; }
+            int start = i;
+            while (i < n) {
+                cp = text.codePointAt(i);
+                if (isWordChar(cp)) { i += Character.charCount(cp); continue; }
+                // keep in-word apostrophes (don't, it's)
+                if ((cp == '\'' || cp == '\u2019') && i + 1 < n && Character.isLetter(text.codePointAt(i + 1))) { i++; continue; }
+                break;
+            }
+            String surface = text.substring(start, i);
+            out.add(new Token(surface, normalize(surface), start, i));
+        }
+        return out;
+    }
+
+    /** Code points of an already normalized key. */
+    public static int[] codePoints(String key) {
+        return key.codePoints().toArray();
+    }
+
+    private static boolean isWordChar(int cp) {
+        return Character.isLetterOrDigit(cp) || Character.getType(cp) == Character.NON_SPACING_MARK
+                || Character.getType(cp) == Character.COMBINING_SPACING_MARK;
+    }
+
+    private static boolean isFoldedAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,213 @@
+package com.FODS_CP.tools;
+
+import com.FODS_CP.Controller.CachedResponse;
+import com.FODS_CP.service.QueryLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a query log written by QueryLogger against a running instance and
+ * reports latency percentiles, throughput and cache hit ratio.
+ *
+ *   java -cp <app classpath> com.FODS_CP.tools.QueryReplay --file=data/querylog/queries.jsonl
+ *        [--target=http://localhost:8080] [--rate=200] [--concurrency=64] [--duration=60]
+ *        [--warmup=10] [--binary] [--accepts=false] [--hgrm=latency.hgrm]
+ * (from the boot jar: java -Dloader.main=com.FODS_CP.tools.QueryReplay
+ *  -cp demo.jar org.springframework.boot.loader.launch.PropertiesLauncher --file=...)
+ *
+ * Open loop: request i is due at a fixed time (i / rate, or its recorded offset
+ * when --rate=0, scaled by --speed) whether or not earlier ones have answered,
+ * and latency is measured from that due time. A stalled server therefore shows
+ * up in the percentiles instead of quietly slowing the load down (coordinated
+ * omission). "service" latency, measured from the actual send, is printed next
+ * to it for comparison.
+ *
+ * --duration > 0 loops the log until that many seconds have been sent;
+ * requests due during the first --warmup seconds are sent but not recorded.
+ * --binary asks for the pre-encoded binary format (less client-side cost).
+ */
+public final class QueryReplay {
+
+    private QueryReplay() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parse(args);
+        if (!opt.containsKey("file")) {
+            System.err.println("usage: QueryReplay --file=queries.jsonl [--target=http://localhost:8080] [--rate=100] [--speed=1.0]"
+                    + " [--concurrency=64] [--duration=0] [--warmup=0] [--binary] [--accepts=true] [--hgrm=path]");
+            System.exit(2);
+        }
+        String target = opt.getOrDefault("target", "http://localhost:8080").replaceAll("/+$", "");
+        double rate = Double.parseDouble(opt.getOrDefault("rate", "100"));
+        double speed = Double.parseDouble(opt.getOrDefault("speed", "1.0"));
+        int concurrency = Integer.parseInt(opt.getOrDefault("concurrency", "64"));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(opt.getOrDefault("duration", "0")));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(opt.getOrDefault("warmup", "0")));
+        boolean binary = Boolean.parseBoolean(opt.getOrDefault("binary", "false"));
+        boolean accepts = Boolean.parseBoolean(opt.getOrDefault("accepts", "true"));
+
+        List<QueryLogger.Entry> log = read(Path.of(opt.get("file")), accepts);
+        if (log.isEmpty()) {
+            System.err.println("no replayable records in " + opt.get("file"));
+            System.exit(1);
+        }
+        long logSpanNanos = TimeUnit.MILLISECONDS.toNanos(log.get(log.size() - 1).ts - log.get(0).ts) + 1;
+        System.out.printf("replaying %d records against %s, %s, concurrency %d%n", log.size(), target,
+                rate > 0 ? rate + " req/s" : "recorded timing x" + speed, concurrency);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(pool)
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        Histogram latency = new ConcurrentHistogram(3);
+        Histogram service = new ConcurrentHistogram(3);
+        AtomicLong ok = new AtomicLong(), hits = new AtomicLong(), suggests = new AtomicLong(),
+                shed = new AtomicLong(), errors = new AtomicLong();
+        ObjectMapper mapper = new ObjectMapper();
+
+        long t0 = System.nanoTime();
+        long sent = 0;
+        for (long i = 0; ; i++) {
+            int idx = (int) (i % log.size());
+            long pass = i / log.size();
+            if (pass > 0 && durationNanos <= 0) break;
+            QueryLogger.Entry e = log.get(idx);
+            long due = rate > 0
+                    ? t0 + (long) (i * 1e9 / rate)
+                    : t0 + (long) ((pass * logSpanNanos + TimeUnit.MILLISECONDS.toNanos(e.ts - log.get(0).ts)) / speed);
+            if (durationNanos > 0 && due - t0 >= durationNanos) break;
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            inFlight.acquire(); // when saturated this delays the send, and the delay is counted
+            boolean record = due - t0 >= warmupNanos;
+            long sendAt = System.nanoTime();
+            HttpRequest request = build(target, e, binary, mapper);
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((resp, err) -> {
+                long end = System.nanoTime();
+                inFlight.release();
+                if (!record) return;
+                if (err != null) { errors.incrementAndGet(); return; }
+                if (resp.statusCode() == 503) shed.incrementAndGet();
+                else if (resp.statusCode() / 100 != 2) { errors.incrementAndGet(); return; }
+                else ok.incrementAndGet();
+                latency.recordValue(Math.max(0, (end - due) / 1000));
+                service.recordValue(Math.max(0, (end - sendAt) / 1000));
+                if ("suggest".equals(e.type) && resp.statusCode() == 200) {
+                    suggests.incrementAndGet();
+                    if (fromCache(resp.body(), binary)) hits.incrementAndGet();
+                }
+            });
+            sent++;
+        }
+        inFlight.acquire(concurrency); // wait for the stragglers
+        long elapsed = System.nanoTime() - t0;
+        pool.shutdown();
+
+        double measuredSeconds = Math.max(1e-9, (elapsed - Math.min(warmupNanos, elapsed)) / 1e9);
+        PrintStream out = System.out;
+        out.printf("sent %d in %.1f s; recorded: %d ok, %d shed (503), %d errors%n", sent, elapsed / 1e9, ok.get(), shed.get(), errors.get());
+        out.printf("throughput %.1f req/s, cache hit ratio %.1f%% (%d of %d suggests)%n",
+                (ok.get() + shed.get()) / measuredSeconds, suggests.get() == 0 ? 0.0 : 100.0 * hits.get() / suggests.get(),
+                hits.get(), suggests.get());
+        print(out, "latency (from due time)", latency);
+        print(out, "service (from send)", service);
+        if (opt.containsKey("hgrm")) {
+            try (PrintStream f = new PrintStream(Files.newOutputStream(Path.of(opt.get("hgrm"))), true, StandardCharsets.UTF_8)) {
+                latency.outputPercentileDistribution(f, 1000.0); // in ms, loads into HdrHistogram's plotter
+            }
+            out.println("percentile distribution written to " + opt.get("hgrm"));
+        }
+    }
+
+    private static HttpRequest build(String target, QueryLogger.Entry e, boolean binary, ObjectMapper mapper) throws IOException {
+        if ("accept".equals(e.type)) {
+            Map<String, String> body = new LinkedHashMap<>();
+            body.put("userId", e.userId);
+            body.put("selected", e.selected);
+            return HttpRequest.newBuilder(URI.create(target + "/api/accept"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                    .build();
+        }
+        StringBuilder url = new StringBuilder(target).append("/api/suggest?limit=").append(e.limit == null ? 6 : e.limit);
+        param(url, "q", e.q);
+        param(url, "context", e.context);
+        param(url, "userId", e.userId);
+        param(url, "category", e.category);
+        param(url, "dict", e.dict);
+        if (Boolean.TRUE.equals(e.group)) url.append("&group=true");
+        return HttpRequest.newBuilder(URI.create(url.toString()))
+                .header("Accept", binary ? CachedResponse.BINARY_TYPE : "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static void param(StringBuilder url, String name, String value) {
+        if (value != null) url.append('&').append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
+
+    // binary: flag byte at offset 3; JSON: meta.fromCache without parsing the body
+    private static boolean fromCache(byte[] body, boolean binary) {
+        if (binary) return body.length > 3 && body[3] == 1;
+        return new String(body, StandardCharsets.ISO_8859_1).contains("\"fromCache\":true");
+    }
+
+    private static void print(PrintStream out, String label, Histogram h) {
+        out.printf("%-24s p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms%n", label,
+                h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0, h.getValueAtPercentile(99) / 1000.0,
+                h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0);
+    }
+
+    private static List<QueryLogger.Entry> read(Path file, boolean accepts) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<QueryLogger.Entry> out = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    QueryLogger.Entry e = mapper.readValue(line, QueryLogger.Entry.class);
+                    if ("suggest".equals(e.type) || (accepts && "accept".equals(e.type))) out.add(e);
+                } catch (IOException ignored) {
+                    // torn last line of a log that is still being written
+                }
+            }
+        }
+        out.sort(Comparator.comparingLong(e -> e.ts));
+        return out;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            if (eq < 0) out.put(a.substring(2), "true");
+            else out.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return out;
+    }
+}
@@ -32,20 +32,48 @@ function buildPrefixContext(full) {
     }
 }
 
-async function fetchSuggestions(prefix, context) {
+// one id per tab so the server can cancel our superseded streams
+const streamClientId = Math.random().toString(36).slice(2);
+let activeStream = null;
+
+function fetchSuggestions(prefix, context) {
+    if (!window.EventSource) { fetchSuggestionsOnce(prefix, context); return; }
+    if (activeStream) activeStream.close();
+    const limit = 6;
+    const url = `/api/suggest/stream?q=${encodeURIComponent(prefix)}&context=${encodeURIComponent(context)}&limit=${limit}&client=${streamClientId}`;
+    const es = new EventSource(url);
+    activeStream = es;
+
+    const onStage = (e) => {
+        if (activeStream !== es) return;
+        try { applySuggestBody(JSON.parse(e.data), prefix); } catch (err) { console.error(err); }
+    };
+    ["completions", "ranked", "corrections"].forEach(stage => es.addEventListener(stage, onStage));
+    es.addEventListener("done", () => { es.close(); if (activeStream === es) activeStream = null; });
+    // server is overloaded: keep whatever is on screen and wait for the next keystroke
+    es.addEventListener("shed", () => { es.close(); if (activeStream === es) activeStream = null; });
+    es.onerror = () => {
+        es.close();
+        if (activeStream === es) { activeStream = null; fetchSuggestionsOnce(prefix, context); }
+    };
+}
+
+async function fetchSuggestionsOnce(prefix, context) {
     try {
         const limit = 6;
         const url = `/api/suggest?q=${encodeURIComponent(prefix)}&context=${encodeURIComponent(context)}&limit=${limit}`;
         const resp = await fetch(url, { headers: { "Accept": "application/json" }});
         if (!resp.ok) { hideSuggestions(); return; }
-        const body = await resp.json();
+        applySuggestBody(await resp.json(), prefix);
+    } catch (e) { console.error(e); hideSuggestions(); }
+}
 
-        const dym = body?.didYouMean || body?.didyoumean || body?.correction || null;
-        const items = Array.isArray(body?.suggestions) ? body.suggestions : [];
-        suggestions = items.map(s => (typeof s === "string") ? s : (s.text ?? s.word ?? "")).filter(Boolean);
+function applySuggestBody(body, prefix) {
+    const dym = body?.didYouMean || body?.didyoumean || body?.correction || null;
+    const items = Array.isArray(body?.suggestions) ? body.suggestions : [];
+    suggestions = items.map(s => (typeof s === "string") ? s : (s.text ?? s.word ?? "")).filter(Boolean);
 
-        renderSuggestions(suggestions, prefix, dym);
-    } catch (e) { console.error(e); hideSuggestions(); }
+    renderSuggestions(suggestions, prefix, dym);
 }
 
 function renderSuggestions(words, prefix, didYouMean) {
@@ -116,7 +144,10 @@ function postAccept(selected) {
 searchInput.addEventListener("input", (e)=>{
     clearTimeout(debounceTimer);
     const full = e.target.value;
-    if (!full || full.trim().length === 0) { hideSuggestions(); showTrending(); return; }
+    if (!full || full.trim().length === 0) {
+        if (activeStream) { activeStream.close(); activeStream = null; }
+        hideSuggestions(); showTrending(); return;
+    }
     debounceTimer = setTimeout(() => {
         const { prefix, context } = buildPrefixContext(full);
         fetchSuggestions(prefix.trim(), context.trim());
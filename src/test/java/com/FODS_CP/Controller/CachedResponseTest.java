@@ -0,0 +1,118 @@
+package com.FODS_CP.Controller;
+
+import com.FODS_CP.service.Suggestion;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedResponseTest {
+
+    private static List<Suggestion> sample() {
+        Suggestion a = new Suggestion("how are you", 120);
+        a.setScore(7.25);
+        a.setCategory("General");
+        a.setLastUsedEpochMillis(1_700_000_123_456L);
+        Suggestion b = new Suggestion("naïve \"quoted\" \\ text", 3);
+        b.setScore(-1.5);
+        Suggestion c = new Suggestion("-9223372036854775808", 1); // the tookMs marker's digits as a suggestion
+        return List.of(a, b, c);
+    }
+
+    private static byte[] plain(ObjectMapper mapper, String prefix, List<Suggestion> list, String dym, long took) throws Exception {
+        return mapper.writeValueAsBytes(new AutocompleteController.SuggestResponse(
+                prefix, list, new AutocompleteController.Meta(true, "v1", took), dym));
+    }
+
+    @Test
+    void jsonMatchesPlainJackson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Suggestion> list = sample().subList(0, 2);
+        CachedResponse r = CachedResponse.encode(mapper, list, "how");
+        assertTrue(r.isPreSerialized());
+        String prefix = "hów \"are\" y\n";
+        assertEquals(new String(plain(mapper, prefix, list, "how", 42), StandardCharsets.UTF_8),
+                new String(r.json(prefix, 42), StandardCharsets.UTF_8));
+        assertArrayEquals(plain(mapper, "", list, "how", 0), r.json(null, 0));
+    }
+
+    @Test
+    void emptyListAndNullDidYouMean() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        CachedResponse r = CachedResponse.encode(mapper, List.of(), null);
+        assertArrayEquals(plain(mapper, "zz", List.of(), null, 7), r.json("zz", 7));
+    }
+
+    @Test
+    void markerDigitsInATextFallBackToJackson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Suggestion> list = sample();
+        CachedResponse r = CachedResponse.encode(mapper, list, null);
+        assertFalse(r.isPreSerialized());
+        assertArrayEquals(plain(mapper, "x", list, null, 5), r.json("x", 5));
+    }
+
+    @Test
+    void otherMapperLayoutsFallBackInsteadOfFailing() throws Exception {
+        List<ObjectMapper> mappers = List.of(
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT),
+                JsonMapper.builder().enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY).build());
+        List<Suggestion> list = sample().subList(0, 2);
+        for (ObjectMapper mapper : mappers) {
+            CachedResponse r = CachedResponse.encode(mapper, list, "how");
+            assertFalse(r.isPreSerialized());
+            assertArrayEquals(plain(mapper, "ho", list, "how", 9), r.json("ho", 9));
+            // the binary format does not depend on the mapper
+            assertEquals("ho", CachedResponse.decodeBinary(r.binary("ho", true, 9)).getPrefix());
+        }
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        List<Suggestion> list = sample();
+        CachedResponse r = CachedResponse.encode(new ObjectMapper(), list, "hello");
+        byte[] bytes = r.binary("hêllo wörld", false, 1234);
+        AutocompleteController.SuggestResponse back = CachedResponse.decodeBinary(bytes);
+
+        assertEquals("hêllo wörld", back.getPrefix());
+        assertEquals("hello", back.getDidYouMean());
+        assertFalse(back.getMeta().isFromCache());
+        assertEquals(1234, back.getMeta().getTookMs());
+        assertEquals(list.size(), back.getSuggestions().size());
+        for (int i = 0; i < list.size(); i++) {
+            Suggestion want = list.get(i), got = back.getSuggestions().get(i);
+            assertEquals(want.getText(), got.getText());
+            assertEquals(want.getFrequency(), got.getFrequency());
+            assertEquals(want.getScore(), got.getScore());
+            assertEquals(want.getLastUsedEpochMillis(), got.getLastUsedEpochMillis());
+            assertEquals(want.getCategory(), got.getCategory());
+        }
+    }
+
+    @Test
+    void binaryAgreesWithJsonForTheSameEntry() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Suggestion> list = sample().subList(0, 2);
+        CachedResponse r = CachedResponse.encode(mapper, list, null);
+        AutocompleteController.SuggestResponse fromBinary = CachedResponse.decodeBinary(r.binary("how a", true, 3));
+        assertArrayEquals(mapper.writeValueAsBytes(fromBinary), r.json("how a", 3));
+    }
+
+    @Test
+    void cachedEntryIsACopy() {
+        Suggestion s = new Suggestion("one", 1);
+        List<Suggestion> list = new java.util.ArrayList<>(List.of(s));
+        CachedResponse r = CachedResponse.encode(new ObjectMapper(), list, null);
+        s.setScore(99);
+        list.clear();
+        assertEquals(1, r.suggestions.size());
+        assertEquals(0.0, r.suggestions.get(0).getScore());
+        assertThrows(UnsupportedOperationException.class, () -> r.suggestions.add(s));
+    }
+}
@@ -0,0 +1,51 @@
+package com.FODS_CP.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadinessGateFilterTest {
+
+    private final ApplicationAvailabilityBean availability = new ApplicationAvailabilityBean();
+
+    private void readiness(ReadinessState state) {
+        availability.onApplicationEvent(new AvailabilityChangeEvent<>(this, state));
+    }
+
+    private static int status(ReadinessGateFilter filter, String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    @Test
+    void gatesEveryTrieEndpointUntilReady() throws Exception {
+        ReadinessGateFilter filter = new ReadinessGateFilter(availability, true);
+        readiness(ReadinessState.REFUSING_TRAFFIC);
+        for (String uri : List.of("/api", "/api/suggest", "/api/session/abc/suggest", "/autocomplete", "/autocomplete/x")) {
+            assertEquals(503, status(filter, uri), uri);
+        }
+        for (String uri : List.of("/actuator/health/readiness", "/index.html", "/apix", "/autocompleted")) {
+            assertEquals(200, status(filter, uri), uri);
+        }
+
+        readiness(ReadinessState.ACCEPTING_TRAFFIC);
+        assertEquals(200, status(filter, "/api/suggest"));
+        assertEquals(200, status(filter, "/autocomplete"));
+    }
+
+    @Test
+    void offWhenDisabled() throws Exception {
+        readiness(ReadinessState.REFUSING_TRAFFIC);
+        assertEquals(200, status(new ReadinessGateFilter(availability, false), "/api/suggest"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.Suggestion;
+import com.FODS_CP.service.TextNormalizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DictionaryRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private String csv(String name, String body) throws IOException {
+        Path p = dir.resolve(name + ".csv");
+        Files.writeString(p, "word,frequency\n" + body);
+        return name + "=file:" + p;
+    }
+
+    private static List<String> texts(List<Suggestion> list) {
+        List<String> out = new ArrayList<>();
+        for (Suggestion s : list) out.add(s.getText() + "=" + s.getFrequency());
+        return out;
+    }
+
+    @Test
+    void wordsComeBackAsSpelledInTheFile() throws IOException {
+        String fr = csv("fr", "Café,50\ncafe,10\nÉcole,30\nchat,20\n");
+        String de = csv("de", "Müsli,40\nCafé,5\n");
+        // folding diacritics: "Café" and "cafe" share the key "cafe", the more frequent spelling is shown
+        DictionaryRegistry registry = new DictionaryRegistry(new TextNormalizer(true), new DefaultResourceLoader(), null,
+                fr + "," + de, 30, 16, 100);
+
+        NamedDictionary f = registry.get("fr");
+        assertEquals(List.of("Café=50", "École=30", "chat=20"), texts(f.complete("", 5)));
+        assertEquals(List.of("Café=50"), texts(f.complete("caf", 5)));
+        FrequencyAwareTrie.FuzzyMatch m = f.fuzzyTopK("cafr", 3).get(0);
+        assertEquals("Café", m.word);
+        assertEquals("cafe", m.key);
+        assertEquals(1, m.distance);
+
+        // loading another dictionary renumbers the shared lexicon; spellings move with the words
+        NamedDictionary d = registry.get("de");
+        assertEquals(List.of("Müsli=40", "Café=5"), texts(d.complete("", 5)));
+        assertEquals(List.of("Café=50", "École=30", "chat=20"), texts(f.complete("", 5)));
+        assertEquals(List.of("École=30"), texts(f.complete("eco", 5)));
+    }
+}
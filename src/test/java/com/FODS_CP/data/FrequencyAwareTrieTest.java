@@ -0,0 +1,122 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.CategoryService;
+import com.FODS_CP.service.Suggestion;
+import com.FODS_CP.service.TextNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrequencyAwareTrieTest {
+
+    private static FrequencyAwareTrie trie() {
+        return new FrequencyAwareTrie(new TextNormalizer(false), new CategoryService(), 168);
+    }
+
+    private static List<String> words(List<FrequencyAwareTrie.FuzzyMatch> matches) {
+        List<String> out = new ArrayList<>();
+        for (FrequencyAwareTrie.FuzzyMatch m : matches) out.add(m.word + "/" + m.distance);
+        return out;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] prev = new int[b.length() + 1], cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] t = prev; prev = cur; cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    @Test
+    void fuzzyTopKIsNearestFirstThenMostFrequent() {
+        FrequencyAwareTrie t = trie();
+        t.insert("he", 5000);
+        t.insert("hero", 900);
+        t.insert("help", 800);
+        t.insert("hello", 300);
+        t.insert("held", 200);
+        t.insert("halo", 40);
+        t.insert("helicopter", 100000); // far outside the edit budget
+
+        assertEquals(List.of("hero/1", "help/1", "hello/1", "held/1", "halo/1", "he/2"), words(t.fuzzyTopK("helo", 20)));
+        assertEquals(List.of("hero/1", "help/1", "hello/1"), words(t.fuzzyTopK("helo", 3)));
+        assertEquals(List.of("help/0", "held/1", "he/2", "hero/2"), words(t.fuzzyTopK("help", 4)));
+        assertEquals(List.of("hero/1", "help/1", "hello/1"), words(t.fuzzyTopK(t.fuzzyFrontier("helo"), 3)));
+        assertTrue(t.fuzzyTopK("", 3).isEmpty());
+        assertTrue(t.fuzzyTopK("helo", 0).isEmpty());
+    }
+
+    @Test
+    void branchAndBoundMatchesExhaustiveSearch() {
+        Random r = new Random(7);
+        FrequencyAwareTrie t = trie();
+        Map<String, Long> vocab = new HashMap<>();
+        long f = 1;
+        while (vocab.size() < 2000) {
+            StringBuilder sb = new StringBuilder();
+            int len = 2 + r.nextInt(6);
+            for (int i = 0; i < len; i++) sb.append((char) ('a' + r.nextInt(6)));
+            if (vocab.putIfAbsent(sb.toString(), f) == null) {
+                t.insert(sb.toString(), f);
+                f += 1 + r.nextInt(5); // distinct counts: no ties to break arbitrarily
+            }
+        }
+        List<String> all = new ArrayList<>(vocab.keySet());
+        for (int n = 0; n < 200; n++) {
+            String q = all.get(r.nextInt(all.size()));
+            q = q.substring(0, q.length() - 1) + (char) ('a' + r.nextInt(7));
+            int max = FrequencyAwareTrie.maxDistanceFor(q.length());
+            String query = q;
+            List<String> expected = vocab.keySet().stream()
+                    .filter(w -> levenshtein(query, w) <= max)
+                    .sorted(Comparator.comparingInt((String w) -> levenshtein(query, w))
+                            .thenComparing(w -> -vocab.get(w)))
+                    .limit(10)
+                    .map(w -> w + "/" + levenshtein(query, w))
+                    .toList();
+            assertEquals(expected, words(t.fuzzyTopK(q, 10)), q);
+            assertEquals(expected, words(t.fuzzyTopK(t.fuzzyFrontier(q), 10)), q);
+        }
+    }
+
+    @Test
+    void categoryFilterMatchesUnfilteredLookupRestrictedToTheCategory() {
+        FrequencyAwareTrie t = trie();
+        CategoryService cats = t.getCategories();
+        t.insert("javascript", 900);
+        t.insert("java", 800);
+        t.insert("jam", 700);
+        t.insert("javelin", 600, "Sports");
+        t.insert("jazz", 500, "Music");
+        int programming = cats.idOf("Programming");
+        int sports = cats.idOf("Sports");
+
+        assertEquals(List.of("javascript", "java"), names(t.getSuggestionsForKey("ja", 10, programming)));
+        assertEquals(List.of("javelin"), names(t.getSuggestionsForKey("ja", 10, sports)));
+        assertEquals(List.of("javascript", "java", "jam", "javelin", "jazz"), names(t.getSuggestionsForKey("ja", 10, -1)));
+        assertEquals(List.of("java/0"), words(t.fuzzyTopK("java", 5, programming).subList(0, 1)));
+        assertTrue(words(t.fuzzyTopK("jav", 5, sports)).stream().allMatch(w -> w.startsWith("javelin")));
+
+        // an explicit category moves the word; the old one drops out of lookups and categoryIds
+        t.insert("javelin", 600, "Music");
+        assertEquals(List.of(), names(t.getSuggestionsForKey("ja", 10, sports)));
+        assertEquals(List.of(), t.fuzzyTopK("javelin", 5, sports));
+        assertEquals(List.of("javelin", "jazz"), names(t.getSuggestionsForKey("ja", 10, cats.idOf("Music"))));
+        assertFalse(t.categoryIds().contains(sports));
+        assertTrue(t.categoryIds().contains(programming));
+    }
+
+    private static List<String> names(List<Suggestion> suggestions) {
+        List<String> out = new ArrayList<>();
+        for (Suggestion s : suggestions) out.add(s.getText());
+        return out;
+    }
+}
@@ -0,0 +1,73 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.NGramService;
+import com.FODS_CP.service.TextNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhraseIndexTest {
+
+    private final TextNormalizer normalizer = new TextNormalizer(false);
+    // not init()-ed: no seeding from the demo n-grams, only what the test adds
+    private final PhraseIndex index = new PhraseIndex(normalizer, new NGramService(normalizer), 4);
+
+    private static List<String> describe(List<PhraseIndex.Match> matches) {
+        List<String> out = new ArrayList<>();
+        for (PhraseIndex.Match m : matches) out.add(m.continuation + "=" + m.count + "@" + m.contextTokensUsed);
+        return out;
+    }
+
+    @Test
+    void completesTheLongestMatchingContext() {
+        index.add("How ARE you", 10);
+        index.add("how are things", 5);
+        index.add("are you sure", 100);
+        index.add("how are you doing", 2);
+
+        assertEquals(List.of("you=10@2", "things=5@2", "you doing=2@2"), describe(index.complete("how are", "", 5)));
+        assertEquals(List.of("you=10@2", "you doing=2@2"), describe(index.complete("how are", "y", 5)));
+        assertEquals(List.of("things=5@2"), describe(index.complete("how are", "th", 5)));
+        assertEquals(List.of("you=10@2"), describe(index.complete("how are", "", 1)));
+    }
+
+    @Test
+    void backsOffToShorterContexts() {
+        index.add("how are you", 10);
+        index.add("are so many", 3);
+        index.add("you sure", 7);
+
+        // nothing starts with "i wonder", then "wonder how are" and so on
+        assertEquals(List.of("you=10@2"), describe(index.complete("i wonder how are", "y", 5)));
+        // "how are" is known but has no continuation starting with "s": back off to "are"
+        assertEquals(List.of("so many=3@1"), describe(index.complete("how are", "s", 5)));
+        assertEquals(List.of("sure=7@1"), describe(index.complete("thank you", "", 5)));
+        assertEquals(List.of(), describe(index.complete("nothing here", "", 5)));
+        assertEquals(List.of(), describe(index.complete("", "y", 5)));
+    }
+
+    @Test
+    void countsAccumulateAndReorderTheTopLists() {
+        index.add("good morning", 5);
+        index.add("good night", 3);
+        assertEquals(List.of("morning=5@1", "night=3@1"), describe(index.complete("good", "", 5)));
+        index.add("good night", 4);
+        assertEquals(List.of("night=7@1", "morning=5@1"), describe(index.complete("good", "", 5)));
+        assertEquals(2, index.size());
+
+        assertFalse(index.add("single", 5));
+        assertFalse(index.add("good evening", 0));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void topListsKeepOnlyTheBestK() {
+        for (int i = 1; i <= 6; i++) index.add("go w" + i, i);
+        assertEquals(List.of("w6=6@1", "w5=5@1", "w4=4@1", "w3=3@1"), describe(index.complete("go", "", 10)));
+        index.add("go w1", 100);
+        assertEquals("w1=101@1", describe(index.complete("go", "", 10)).get(0));
+    }
+}
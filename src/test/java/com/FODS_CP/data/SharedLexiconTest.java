@@ -0,0 +1,125 @@
+package com.FODS_CP.data;
+
+import com.FODS_CP.service.Suggestion;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedLexiconTest {
+
+    // unsorted, with duplicates, words that are prefixes of others, and non-ASCII
+    private static final List<String> KEYS = List.of(
+            "help", "hello", "he", "zebra", "hello", "héllo", "a", "ab", "abc", "abd", "b", "he",
+            "helper", "straße", "stra", "über", "ab", "x", "", "zebras", "𝄞clef", "𝄞");
+
+    private static List<String> sortedDistinct(Collection<String> keys) {
+        List<int[]> cps = new ArrayList<>();
+        for (String k : new HashSet<>(keys)) if (!k.isEmpty()) cps.add(k.codePoints().toArray());
+        cps.sort(Arrays::compare);
+        List<String> out = new ArrayList<>();
+        for (int[] w : cps) out.add(new String(w, 0, w.length));
+        return out;
+    }
+
+    private static NamedDictionary dict(SharedLexicon lex, Map<String, Long> counts) {
+        return new NamedDictionary("t", lex, counts, Caffeine.newBuilder().build());
+    }
+
+    private static List<String> texts(List<Suggestion> list) {
+        List<String> out = new ArrayList<>();
+        for (Suggestion s : list) out.add(s.getText() + "=" + s.getFrequency());
+        return out;
+    }
+
+    @Test
+    void numbersWordsInCodePointOrder() {
+        SharedLexicon lex = SharedLexicon.build(KEYS);
+        List<String> expected = sortedDistinct(KEYS);
+        assertEquals(expected.size(), lex.size());
+        assertEquals(expected, lex.words());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), lex.wordAt(i));
+            assertEquals(i, lex.indexOf(expected.get(i)));
+        }
+        assertEquals(-1, lex.indexOf("hel"));   // a prefix only
+        assertEquals(-1, lex.indexOf("helpx"));
+        assertThrows(IndexOutOfBoundsException.class, () -> lex.wordAt(expected.size()));
+    }
+
+    @Test
+    void prefixRangesAreContiguous() {
+        SharedLexicon lex = SharedLexicon.build(KEYS);
+        List<String> words = lex.words();
+        Set<String> prefixes = new TreeSet<>();
+        for (String w : words) {
+            for (int i = 0; i <= w.length(); i = i < w.length() ? w.offsetByCodePoints(i, 1) : i + 1) {
+                prefixes.add(w.substring(0, i));
+            }
+        }
+        for (String p : prefixes) {
+            int[] r = lex.prefixRange(p);
+            assertNotNull(r, p);
+            List<Integer> matching = new ArrayList<>();
+            for (int i = 0; i < words.size(); i++) if (words.get(i).startsWith(p)) matching.add(i);
+            int count = lex.count(r[0]);
+            assertEquals(matching.size(), count, p);
+            assertEquals(matching.get(0), r[1], p);
+            assertEquals(matching.get(matching.size() - 1), r[1] + count - 1, p);
+        }
+        assertNull(lex.prefixRange("q"));
+        assertNull(lex.prefixRange("hex"));
+        assertEquals(0, SharedLexicon.EMPTY.size());
+        assertEquals(List.of(), SharedLexicon.EMPTY.words());
+    }
+
+    @Test
+    void remapKeepsCountsAndOrder() {
+        Map<String, Long> counts = new HashMap<>();
+        counts.put("hello", 50L);
+        counts.put("help", 80L);
+        counts.put("he", 20L);
+        counts.put("über", 5L);
+        counts.put("zebra", 7L);
+        counts.put("nothere", 0L); // non-positive counts are not words of the dictionary
+
+        SharedLexicon small = SharedLexicon.build(counts.keySet());
+        NamedDictionary d = dict(small, counts);
+        List<String> before = texts(d.complete("", 10));
+        assertEquals(List.of("help=80", "hello=50", "he=20", "zebra=7", "über=5"), before);
+        assertEquals(5, d.words());
+
+        // a larger union: every number moves, the dictionary's view of itself does not
+        List<String> old = small.words();
+        List<String> union = new ArrayList<>(old);
+        union.addAll(KEYS);
+        SharedLexicon next = SharedLexicon.build(union);
+        int[] moved = new int[old.size()];
+        for (int i = 0; i < moved.length; i++) moved[i] = next.indexOf(old.get(i));
+        d.remap(next, moved);
+        assertNotEquals(old.size(), next.size());
+        assertEquals(before, texts(d.complete("", 10)));
+        assertEquals(List.of("help=80", "hello=50", "he=20"), texts(d.complete("he", 10)));
+        assertEquals(List.of("help=80", "hello=50"), texts(d.complete("hel", 10)));
+        assertEquals(List.of(), texts(d.complete("ab", 10)));
+        assertEquals(80, d.frequency("help"));
+        assertFalse(d.contains("helper"));
+        assertFalse(d.contains("nothere"));
+
+        // dropping words: the ones still numbered keep their counts
+        old = next.words();
+        List<String> keep = new ArrayList<>();
+        moved = new int[old.size()];
+        for (int i = 0; i < moved.length; i++) {
+            boolean k = !old.get(i).equals("hello") && !old.get(i).startsWith("a");
+            moved[i] = k ? keep.size() : -1;
+            if (k) keep.add(old.get(i));
+        }
+        d.remap(SharedLexicon.build(keep), moved);
+        assertEquals(List.of("help=80", "he=20", "zebra=7", "über=5"), texts(d.complete("", 10)));
+        assertEquals(4, d.words());
+        assertEquals(0, d.frequency("hello"));
+    }
+}
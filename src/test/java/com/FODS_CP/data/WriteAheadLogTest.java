@@ -0,0 +1,133 @@
+package com.FODS_CP.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static void write(WriteAheadLog wal, String... records) {
+        for (String r : records) wal.append(r.getBytes(StandardCharsets.UTF_8)).join();
+    }
+
+    // replay needs a log opened on the directory afterwards, as on a restart
+    private List<String> replay(long fromSegment) throws IOException {
+        List<String> out = new ArrayList<>();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            wal.replay(fromSegment, p -> out.add(new String(p, StandardCharsets.UTF_8)));
+        }
+        return out;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("wal-")).sorted().toList();
+        }
+    }
+
+    private Path lastNonEmptySegment() throws IOException {
+        Path last = null;
+        for (Path p : segmentFiles()) if (Files.size(p) > 0) last = p;
+        return last;
+    }
+
+    @Test
+    void replaysWhatWasAppendedAcrossRestarts() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            write(wal, "a", "b");
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.INTERVAL, 5)) {
+            write(wal, "c");
+        }
+        assertEquals(List.of("a", "b", "c"), replay(0));
+    }
+
+    @Test
+    void tornTailEndsReplayOfItsSegmentOnly() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            write(wal, "one", "two");
+        }
+        // crash mid-write: a header promising 100 bytes followed by 3 of them
+        byte[] torn = { 0, 0, 0, 100, 1, 2, 3, 4, 'x', 'y', 'z' };
+        Files.write(lastNonEmptySegment(), torn, StandardOpenOption.APPEND);
+        assertEquals(List.of("one", "two"), replay(0));
+
+        // the next process never appends behind the torn record
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            write(wal, "three");
+        }
+        assertEquals(List.of("one", "two", "three"), replay(0));
+    }
+
+    @Test
+    void truncatedHeaderIsIgnored() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            write(wal, "one");
+        }
+        Files.write(lastNonEmptySegment(), new byte[] { 0, 0 }, StandardOpenOption.APPEND);
+        assertEquals(List.of("one"), replay(0));
+    }
+
+    @Test
+    void crcMismatchStopsAtTheCorruptRecord() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            write(wal, "first", "second", "third");
+        }
+        Path seg = lastNonEmptySegment();
+        byte[] all = Files.readAllBytes(seg);
+        // records are [len][crc][payload]; flip one payload byte of "second"
+        int second = 8 + "first".length();
+        all[second + 8] ^= 0x20;
+        Files.write(seg, all);
+        assertEquals(List.of("first"), replay(0));
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            write(wal, "fourth");
+        }
+        assertEquals(List.of("first", "fourth"), replay(0));
+    }
+
+    @Test
+    void rotateSplitsRecordsAndDeleteBeforeDropsOnlyOlderSegments() throws IOException {
+        long checkpointSegment;
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.INTERVAL, 1000)) {
+            // queued but not yet written when rotate() runs: still lands before the cut
+            wal.append("a".getBytes(StandardCharsets.UTF_8));
+            wal.append("b".getBytes(StandardCharsets.UTF_8));
+            checkpointSegment = wal.rotate();
+            wal.append("c".getBytes(StandardCharsets.UTF_8));
+            wal.append("d".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of("a", "b", "c", "d"), replay(0));
+        assertEquals(List.of("c", "d"), replay(checkpointSegment));
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5)) {
+            wal.deleteBefore(checkpointSegment);
+        }
+        for (Path p : segmentFiles()) {
+            String n = p.getFileName().toString();
+            assertTrue(Long.parseLong(n.substring(4, n.length() - 4)) >= checkpointSegment, n);
+        }
+        assertEquals(List.of("c", "d"), replay(0));
+    }
+
+    @Test
+    void appendAfterCloseFails() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, WriteAheadLog.Fsync.ALWAYS, 5);
+        wal.close();
+        assertTrue(wal.append(new byte[] { 1 }).isCompletedExceptionally());
+    }
+}
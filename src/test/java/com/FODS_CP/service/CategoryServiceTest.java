@@ -0,0 +1,61 @@
+package com.FODS_CP.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryServiceTest {
+
+    @Test
+    void keywordAnywhereInTheWordDecidesTheCategory() {
+        CategoryService c = new CategoryService();
+        assertEquals("Programming", c.name(c.categoryOf("java")));
+        assertEquals("Programming", c.name(c.categoryOf("javascript")));
+        assertEquals("Programming", c.name(c.categoryOf("springboot")));
+        assertEquals("Sports", c.name(c.categoryOf("tablefootball")));
+        assertEquals("Entertainment", c.name(c.categoryOf("moviegoer")));
+        assertEquals(CategoryService.GENERAL_ID, c.categoryOf("jav"));
+        assertEquals(CategoryService.GENERAL_ID, c.categoryOf(""));
+        assertEquals(CategoryService.GENERAL_ID, c.categoryOf(null));
+    }
+
+    @Test
+    void failureLinksFindKeywordsAfterAPartialMatch() {
+        CategoryService c = new CategoryService();
+        // "jav" and "mus" start keywords that do not finish; the scan must fall back and still match
+        assertEquals("Programming", c.name(c.categoryOf("jajava")));
+        assertEquals("Entertainment", c.name(c.categoryOf("musmusic")));
+        assertEquals("Sports", c.name(c.categoryOf("crcricket")));
+    }
+
+    @Test
+    void keywordThatEndsFirstWins() {
+        CategoryService c = new CategoryService();
+        assertEquals("Entertainment", c.name(c.categoryOf("musicjava")));
+        assertEquals("Programming", c.name(c.categoryOf("javamusic")));
+    }
+
+    @Test
+    void registeredNamesGetStableIds() {
+        CategoryService c = new CategoryService();
+        int before = c.names().size();
+        int id = c.register(" Cooking ");
+        assertEquals(id, c.register("Cooking"));
+        assertEquals(id, c.idOf("cooking"));
+        assertEquals(before + 1, c.names().size());
+        assertEquals(CategoryService.GENERAL_ID, c.register("  "));
+        assertEquals(-1, c.idOf("Gardening"));
+        assertEquals("General", c.name(999));
+    }
+
+    @Test
+    void groupsWordsByCategoryInFirstSeenOrder() {
+        CategoryService c = new CategoryService();
+        Map<String, List<String>> g = c.groupByCategory(List.of("Java", "hello", "Cricket", "spring"));
+        assertEquals(List.of("Programming", "General", "Sports"), List.copyOf(g.keySet()));
+        assertEquals(List.of("Java", "spring"), g.get("Programming"));
+    }
+}
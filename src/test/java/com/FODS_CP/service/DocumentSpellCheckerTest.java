@@ -0,0 +1,92 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentSpellCheckerTest {
+
+    private final TextNormalizer normalizer = new TextNormalizer(false);
+    private final FrequencyAwareTrie trie = new FrequencyAwareTrie(normalizer, new CategoryService(), 168);
+    private final NGramService nGrams = new NGramService(normalizer);
+    private final List<DocumentSpellChecker> checkers = new ArrayList<>();
+
+    DocumentSpellCheckerTest() {
+        for (String w : List.of("hello", "world", "café", "naïve")) trie.insert(w, 100);
+        trie.insert("help", 20);
+    }
+
+    private DocumentSpellChecker checker(int threads, int maxDistinct, int maxIssues) {
+        DocumentSpellChecker c = new DocumentSpellChecker(trie, nGrams, normalizer, null, 0, threads, maxDistinct, maxIssues);
+        checkers.add(c);
+        return c;
+    }
+
+    @AfterEach
+    void stopPools() {
+        for (DocumentSpellChecker c : checkers) c.shutdown();
+    }
+
+    private static DocumentSpellChecker.Result check(DocumentSpellChecker c, String text) throws IOException {
+        return c.check(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, null);
+    }
+
+    @Test
+    void offsetsPointIntoTheDecodedTextAcrossChunks() throws IOException {
+        // well past one 64K read, with multi-byte and surrogate-pair text before the typos
+        StringBuilder doc = new StringBuilder();
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; doc.length() < 200_000; i++) {
+            doc.append(i % 2 == 0 ? "café 𝄞 naïve " : "hello world ");
+            if (i % 997 == 0) {
+                starts.add(doc.length());
+                doc.append(i % 2 == 0 ? "helo " : "wrold\n");
+            }
+        }
+        DocumentSpellChecker.Result r = check(checker(1, 1000, 1000), doc.toString());
+
+        assertEquals(starts.size(), r.issues.size());
+        for (int i = 0; i < starts.size(); i++) {
+            DocumentSpellChecker.Issue issue = r.issues.get(i);
+            assertEquals((int) starts.get(i), issue.start, issue.word);
+            assertEquals(issue.word, doc.substring(issue.start, issue.end));
+            assertEquals(issue.word.equals("helo") ? "hello" : "world", issue.correction);
+        }
+        assertEquals(doc.length(), r.stats.chars);
+        assertEquals(doc.toString().getBytes(StandardCharsets.UTF_8).length, r.stats.bytes);
+        assertEquals(2, r.stats.distinctUnknown);
+        assertFalse(r.stats.truncated);
+    }
+
+    @Test
+    void perDocumentCapsTruncateInsteadOfGrowing() throws IOException {
+        DocumentSpellChecker.Result r = check(checker(2, 2, 3), "helo wrold helo halp wrold zzqx");
+
+        assertEquals(6, r.stats.unknown);
+        assertEquals(2, r.stats.distinctUnknown); // helo, wrold searched; halp and zzqx were over the cap
+        assertTrue(r.stats.truncated);
+        assertEquals(List.of("helo", "wrold", "helo"), r.issues.stream().map(i -> i.word).toList());
+        assertEquals("hello", r.issues.get(2).correction);
+    }
+
+    @Test
+    void searchesPastTheQueueRunOnTheCaller() throws IOException {
+        // one worker and a 64-slot queue, hundreds of distinct typos: caller-runs keeps everything answered
+        StringBuilder doc = new StringBuilder();
+        for (char a = 'a'; a <= 'z'; a++) {
+            for (char b = 'a'; b <= 'z'; b++) doc.append("hel").append(a).append(b).append("o ");
+        }
+        DocumentSpellChecker.Result r = check(checker(1, 10_000, 10_000), doc.toString());
+        assertEquals(26 * 26, r.issues.size());
+        assertEquals(r.issues.size(), r.stats.distinctUnknown);
+        assertTrue(r.issues.stream().allMatch(i -> i.correction != null), "every typo has a correction");
+    }
+}
@@ -0,0 +1,82 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.PhraseIndex;
+import com.FODS_CP.data.UserStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeystrokeSessionServiceTest {
+
+    private final TextNormalizer normalizer = new TextNormalizer(false);
+    private final FrequencyAwareTrie trie = new FrequencyAwareTrie(normalizer, new CategoryService(), 168);
+    private final KeystrokeSessionService sessions;
+    private final SuggestPipeline pipeline;
+    private final LoadShedder.Permit permit = new LoadShedder(null, 50, 4, 256, 32, 30).tryAcquire("test");
+
+    KeystrokeSessionServiceTest(@TempDir Path dir) {
+        NGramService nGrams = new NGramService(normalizer);
+        nGrams.init();
+        PhraseIndex phrases = new PhraseIndex(normalizer, nGrams, 16);
+        phrases.init();
+        pipeline = new SuggestPipeline(trie, phrases, nGrams, new UserStore(normalizer, dir.resolve("users.json").toString()), normalizer, 50, 400);
+        sessions = new KeystrokeSessionService(trie, pipeline, normalizer, 1 << 20, 300);
+        trie.insert("help", 50);
+        trie.insert("helmet", 30);
+        trie.insert("hero", 20);
+        trie.insert("hello", 10);
+    }
+
+    private List<String> suggest(String token, String q) {
+        KeystrokeSessionService.Result r = sessions.suggest(token, q, null, 4, null, permit);
+        assertNotNull(r, q);
+        List<String> out = new ArrayList<>();
+        for (Suggestion s : r.suggestions) out.add(s.getText());
+        return out;
+    }
+
+    private List<String> pipelineSuggest(String q) {
+        SuggestPipeline.Run run = pipeline.newRun(q, null, 4, null);
+        pipeline.completions(run);
+        pipeline.ranked(run);
+        List<String> out = new ArrayList<>();
+        for (Suggestion s : pipeline.corrections(run)) out.add(s.getText());
+        return out;
+    }
+
+    @Test
+    void typingAndBackspaceMatchThePipeline() {
+        String token = sessions.open();
+        for (String q : List.of("h", "he", "hel", "helm", "hel", "he", "her", "hero")) {
+            assertEquals(pipelineSuggest(q), suggest(token, q), q);
+        }
+    }
+
+    @Test
+    void learnedCountsInvalidateNarrowedFrames() {
+        String token = sessions.open();
+        suggest(token, "he");
+        assertNotEquals("hello", suggest(token, "hel").get(0));
+
+        trie.recordUse("hello", 1000, System.currentTimeMillis());
+        suggest(token, "he"); // the "he" frame is reused: its completions predate the accept
+        List<String> after = suggest(token, "hel");
+        assertEquals("hello", after.get(0));
+        assertEquals(pipelineSuggest("hel"), after);
+    }
+
+    @Test
+    void closedSessionStaysClosed() {
+        String token = sessions.open();
+        suggest(token, "he");
+        sessions.close(token);
+        assertNull(sessions.suggest(token, "hel", null, 4, null, permit));
+        assertNull(sessions.suggest(token, "help", null, 4, null, permit));
+    }
+}
@@ -0,0 +1,180 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.PhraseIndex;
+import com.FODS_CP.data.UserStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LearningServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<Instance> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() {
+        for (Instance i : opened) i.learning.shutdown();
+    }
+
+    private Instance open() {
+        Instance i = new Instance(dir);
+        opened.add(i);
+        return i;
+    }
+
+    /** One process worth of state: the static dictionary plus whatever was learned or replayed. */
+    private static final class Instance {
+        final TextNormalizer normalizer = new TextNormalizer(false);
+        final FrequencyAwareTrie trie = new FrequencyAwareTrie(normalizer, new CategoryService(), 168);
+        final NGramService nGrams = new NGramService(normalizer);
+        final PhraseIndex phrases = new PhraseIndex(normalizer, nGrams, 16);
+        final UserStore users;
+        final LearningService learning;
+
+        Instance(Path dir) {
+            users = new UserStore(normalizer, dir.resolve("users.json").toString()); // never saved, starts empty
+            nGrams.init();
+            phrases.init();
+            for (String w : List.of("hello", "help", "world", "word")) trie.insert(w, 10);
+            // fsync=always so accept() returns after the record is on disk; no background checkpoints
+            learning = new LearningService(trie, phrases, nGrams, users, normalizer, null,
+                    dir.toString(), "always", 5, 3600, Long.MAX_VALUE);
+        }
+
+        Map<String, FrequencyAwareTrie.Entry> words() {
+            Map<String, FrequencyAwareTrie.Entry> out = new TreeMap<>();
+            for (FrequencyAwareTrie.Entry e : trie.entries()) out.put(e.key, e);
+            return out;
+        }
+
+        Map<String, Long> bigramsAfter(String... contexts) {
+            Map<String, Long> out = new TreeMap<>();
+            for (String c : contexts) {
+                for (NGramService.Candidate n : nGrams.getNextWordCandidates(c, 100)) out.put(c + " " + n.word, n.count);
+            }
+            return out;
+        }
+    }
+
+    private static void learn(LearningService s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            s.accept("u" + (i % 3), i % 2 == 0 ? "help" : "hello there friend");
+            s.accept(null, "newword" + (i % 4));
+        }
+    }
+
+    private void assertSameState(Instance expected, Instance replayed) {
+        Map<String, FrequencyAwareTrie.Entry> want = expected.words(), got = replayed.words();
+        assertEquals(want.keySet(), got.keySet());
+        for (String k : want.keySet()) {
+            assertEquals(want.get(k).freq, got.get(k).freq, k);
+            assertEquals(want.get(k).lastTouched, got.get(k).lastTouched, k);
+            // entries() scores as of its own clock read, and the two reads are not in the same millisecond
+            assertEquals(want.get(k).logScore, got.get(k).logScore, 1e-6, k);
+        }
+        assertEquals(expected.bigramsAfter("hello", "there"), replayed.bigramsAfter("hello", "there"));
+        for (String u : List.of("u0", "u1", "u2")) {
+            assertEquals(expected.users.getUser(u), replayed.users.getUser(u), u);
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("wal-"))
+                    .map(n -> Long.parseLong(n.substring(4, n.length() - 4)))
+                    .sorted().toList();
+        }
+    }
+
+    @Test
+    void logReplayRestoresLearnedState() {
+        Instance before = open();
+        before.learning.replay();
+        learn(before.learning, 0, 20);
+
+        Instance after = open();
+        after.learning.replay();
+        assertSameState(before, after);
+    }
+
+    @Test
+    void checkpointPlusLaterSegmentsGiveTheSameState() throws IOException {
+        Instance before = open();
+        before.learning.replay();
+        learn(before.learning, 0, 10);
+        before.learning.checkpoint();
+        learn(before.learning, 10, 25);
+
+        Instance after = open();
+        after.learning.replay();
+        assertSameState(before, after);
+    }
+
+    @Test
+    void checkpointCoversExactlyTheSegmentsItDeletes() throws IOException {
+        Instance first = open();
+        first.learning.replay();
+        learn(first.learning, 0, 5);
+        first.learning.checkpoint();
+        long covered = new ObjectMapper().readTree(dir.resolve("checkpoint.json").toFile()).get("segment").asLong();
+        assertFalse(segments().isEmpty());
+        for (long s : segments()) assertTrue(s >= covered, "segment " + s + " is older than the checkpoint");
+
+        learn(first.learning, 5, 8);
+        first.learning.checkpoint();
+        long next = new ObjectMapper().readTree(dir.resolve("checkpoint.json").toFile()).get("segment").asLong();
+        assertTrue(next > covered);
+        for (long s : segments()) assertTrue(s >= next);
+
+        Instance after = open();
+        after.learning.replay();
+        assertSameState(first, after);
+        assertFalse(Files.exists(dir.resolve("checkpoint.json.tmp")));
+    }
+
+    @Test
+    void replayIsIdempotentWithinAProcess() {
+        Instance before = open();
+        before.learning.replay();
+        learn(before.learning, 0, 6);
+
+        Instance after = open();
+        after.learning.replay();
+        after.learning.replay(); // second call is a no-op
+        assertSameState(before, after);
+    }
+
+    @Test
+    void eachCheckpointFoldsIntoThePreviousOne() throws IOException {
+        Instance first = open();
+        first.learning.replay();
+        learn(first.learning, 0, 6);
+        first.learning.checkpoint();
+        learn(first.learning, 6, 10);
+        first.learning.checkpoint();
+        first.learning.checkpoint(); // nothing new since the last one; the file must keep its totals
+
+        LearningService.Checkpoint c = new ObjectMapper().readValue(dir.resolve("checkpoint.json").toFile(), LearningService.Checkpoint.class);
+        assertEquals(5, c.words.get("help").count);
+        assertEquals(10, c.words.values().stream().filter(d -> d.word.startsWith("newword")).mapToLong(d -> d.count).sum());
+        assertEquals(5L, c.phrases.get("hello there friend"));
+        assertEquals(Map.of("help", 2, "hello there friend", 2), c.users.get("u0"));
+
+        Instance after = open();
+        after.learning.replay();
+        assertSameState(first, after);
+    }
+}
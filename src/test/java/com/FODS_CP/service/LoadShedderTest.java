@@ -0,0 +1,124 @@
+package com.FODS_CP.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadShedderTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long WINDOW = 30_000 * MS;
+
+    // target 10 ms, limits 2..20, starting at 10, 30 s baseline window
+    private static LoadShedder shedder() {
+        return new LoadShedder(null, 10, 2, 20, 10, 30);
+    }
+
+    @Test
+    void levelFollowsUtilizationAndExcessIsShed() {
+        LoadShedder s = shedder();
+        List<LoadShedder.Level> levels = new ArrayList<>();
+        List<LoadShedder.Permit> held = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            LoadShedder.Permit p = s.tryAcquire("test");
+            held.add(p);
+            levels.add(p.level);
+        }
+        assertEquals(List.of(
+                LoadShedder.Level.FULL, LoadShedder.Level.FULL, LoadShedder.Level.FULL,
+                LoadShedder.Level.FULL, LoadShedder.Level.FULL, LoadShedder.Level.FULL,
+                LoadShedder.Level.NO_CORRECTIONS, LoadShedder.Level.NO_CORRECTIONS,
+                LoadShedder.Level.COMPLETIONS_ONLY, LoadShedder.Level.COMPLETIONS_ONLY), levels);
+        assertTrue(held.get(0).allowsRanking() && held.get(0).allowsCorrections());
+        assertTrue(held.get(6).allowsRanking() && !held.get(6).allowsCorrections());
+        assertFalse(held.get(9).allowsRanking());
+
+        assertNull(s.tryAcquire("test"));
+        assertEquals(10, s.getInFlight());
+
+        held.get(0).close();
+        held.get(0).close(); // closing twice releases once
+        assertEquals(9, s.getInFlight());
+        assertNotNull(s.tryAcquire("test"));
+    }
+
+    @Test
+    void fastSamplesGrowAdditivelySlowOnesShrinkByTenPercent() {
+        LoadShedder s = shedder();
+        s.onSample(2 * MS, LoadShedder.Level.FULL, 0);
+        assertEquals(10.1, s.getLimit(), 1e-9);
+        s.onSample(50 * MS, LoadShedder.Level.FULL, 0); // above target and 2x baseline
+        assertEquals(9.09, s.getLimit(), 1e-9);
+
+        for (int i = 0; i < 100; i++) s.onSample(50 * MS, LoadShedder.Level.FULL, 0);
+        assertEquals(2, s.getLimit(), 1e-9);
+        for (int i = 0; i < 1000; i++) s.onSample(1 * MS, LoadShedder.Level.FULL, 0);
+        assertEquals(20, s.getLimit(), 1e-9);
+    }
+
+    @Test
+    void slowMeansAboveTargetAndTwiceTheBaseline() {
+        LoadShedder s = shedder();
+        s.onSample(8 * MS, LoadShedder.Level.FULL, 0); // baseline 8 ms
+        double before = s.getLimit();
+        s.onSample(12 * MS, LoadShedder.Level.FULL, 0); // over the target, under 2x baseline
+        assertTrue(s.getLimit() > before);
+        before = s.getLimit();
+        s.onSample(17 * MS, LoadShedder.Level.FULL, 0); // over both
+        assertTrue(s.getLimit() < before);
+
+        LoadShedder quick = shedder();
+        quick.onSample(2 * MS, LoadShedder.Level.FULL, 0); // baseline 2 ms
+        before = quick.getLimit();
+        quick.onSample(8 * MS, LoadShedder.Level.FULL, 0); // 4x baseline but under the target
+        assertTrue(quick.getLimit() > before);
+        assertEquals(2 * MS, quick.getBaselineNanos());
+    }
+
+    @Test
+    void baselineIsTheWindowedMinimumOfCleanFullSamples() {
+        LoadShedder s = shedder();
+        long t0 = System.nanoTime(); // the first window opened just before this
+        assertEquals(0, s.getBaselineNanos());
+        s.onSample(3 * MS, LoadShedder.Level.NO_CORRECTIONS, t0); // degraded work does not count
+        assertEquals(0, s.getBaselineNanos());
+        s.onSample(5 * MS, LoadShedder.Level.FULL, t0);
+        s.onSample(4 * MS, LoadShedder.Level.FULL, t0 + MS);
+        assertEquals(4 * MS, s.getBaselineNanos());
+
+        // next window: the previous minimum carries over until a lower one shows up
+        s.onSample(6 * MS, LoadShedder.Level.FULL, t0 + WINDOW);
+        assertEquals(4 * MS, s.getBaselineNanos());
+        // a window with only slow samples keeps the last clean baseline
+        s.onSample(90 * MS, LoadShedder.Level.FULL, t0 + 2 * WINDOW);
+        assertEquals(6 * MS, s.getBaselineNanos());
+        s.onSample(95 * MS, LoadShedder.Level.FULL, t0 + 3 * WINDOW);
+        assertEquals(6 * MS, s.getBaselineNanos());
+        // and once latency really drops it follows
+        s.onSample(2 * MS, LoadShedder.Level.FULL, t0 + 3 * WINDOW + MS);
+        assertEquals(2 * MS, s.getBaselineNanos());
+    }
+
+    @Test
+    void concurrentPermitsAllComeBack() throws InterruptedException {
+        LoadShedder s = new LoadShedder(null, 10, 2, 256, 256, 30);
+        int threads = 8;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    LoadShedder.Permit p = s.tryAcquire("test");
+                    if (p != null) p.close();
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(0, s.getInFlight());
+        assertTrue(s.getLimit() >= 2 && s.getLimit() <= 256);
+    }
+}
@@ -0,0 +1,77 @@
+package com.FODS_CP.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryLoggerTest {
+
+    @TempDir
+    Path dir;
+
+    private List<QueryLogger.Entry> read(Path file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<QueryLogger.Entry> out = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) out.add(mapper.readValue(line, QueryLogger.Entry.class));
+        return out;
+    }
+
+    @Test
+    void everySampledRequestIsWrittenOnShutdown() throws IOException {
+        Path file = dir.resolve("q/queries.jsonl");
+        QueryLogger log = new QueryLogger(null, true, 1.0, file.toString(), 100, 0);
+        log.suggest("how are y", "", 6, "u1", null, false, null);
+        log.suggest("caf", "le", 3, null, "Food", true, "fr");
+        log.accept("u1", "how are you");
+        log.shutdown();
+
+        List<QueryLogger.Entry> got = read(file);
+        assertEquals(3, got.size());
+        assertEquals("suggest", got.get(0).type);
+        assertEquals("how are y", got.get(0).q);
+        assertEquals(6, got.get(0).limit);
+        assertNull(got.get(0).group);
+        assertEquals(Boolean.TRUE, got.get(1).group);
+        assertEquals("fr", got.get(1).dict);
+        assertEquals("accept", got.get(2).type);
+        assertEquals("how are you", got.get(2).selected);
+        // null fields are left out of the line, not written as null
+        assertFalse(Files.readAllLines(file).get(2).contains("\"q\""));
+    }
+
+    @Test
+    void rotatesOnceTheFileReachesMaxBytes() throws IOException {
+        Path file = dir.resolve("queries.jsonl");
+        // one line is about 70 bytes: the second one crosses the limit and the file moves to .1
+        QueryLogger log = new QueryLogger(null, true, 1.0, file.toString(), 100, 100);
+        log.accept("u1", "first");
+        log.accept("u1", "second");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(dir.resolve("queries.jsonl.1")) && System.currentTimeMillis() < deadline) Thread.onSpinWait();
+        log.accept("u1", "third");
+        log.shutdown();
+
+        assertEquals(List.of("first", "second"), read(dir.resolve("queries.jsonl.1")).stream().map(e -> e.selected).toList());
+        assertEquals(List.of("third"), read(file).stream().map(e -> e.selected).toList());
+    }
+
+    @Test
+    void disabledOrZeroRateWritesNothing() {
+        Path file = dir.resolve("off.jsonl");
+        QueryLogger off = new QueryLogger(null, false, 1.0, file.toString(), 100, 0);
+        QueryLogger zero = new QueryLogger(null, true, 0.0, file.toString(), 100, 0);
+        for (QueryLogger log : List.of(off, zero)) {
+            log.accept("u1", "x");
+            log.shutdown();
+        }
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,91 @@
+package com.FODS_CP.service;
+
+import com.FODS_CP.data.FrequencyAwareTrie;
+import com.FODS_CP.data.PhraseIndex;
+import com.FODS_CP.data.UserStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestPipelineTest {
+
+    private final TextNormalizer normalizer = new TextNormalizer(false);
+    private final FrequencyAwareTrie trie = new FrequencyAwareTrie(normalizer, new CategoryService(), 168);
+    private final SuggestPipeline pipeline;
+    private final UserStore users;
+
+    SuggestPipelineTest(@TempDir Path dir) {
+        users = new UserStore(normalizer, dir.resolve("users.json").toString());
+        pipeline = pipelineOver(trie);
+    }
+
+    private SuggestPipeline pipelineOver(FrequencyAwareTrie t) {
+        NGramService nGrams = new NGramService(normalizer);
+        nGrams.init();
+        PhraseIndex phrases = new PhraseIndex(normalizer, nGrams, 16);
+        phrases.init();
+        return new SuggestPipeline(t, phrases, nGrams, users, normalizer, 50, 400);
+    }
+
+    private List<String> suggest(String q, int limit) {
+        return suggest(pipeline, q, limit);
+    }
+
+    private static List<String> suggest(SuggestPipeline pipeline, String q, int limit) {
+        SuggestPipeline.Run run = pipeline.newRun(q, null, limit, null);
+        pipeline.completions(run);
+        pipeline.ranked(run);
+        List<String> out = new ArrayList<>();
+        for (Suggestion s : pipeline.corrections(run)) out.add(s.getText());
+        return out;
+    }
+
+    @Test
+    void nearestCorrectionFirstAndFrequencyBreaksTies() {
+        trie.insert("he", 50000);
+        trie.insert("help", 800);
+        trie.insert("hello", 300);
+        trie.insert("held", 200);
+
+        List<String> out = suggest("helo", 6);
+        assertEquals(List.of("help", "hello", "held", "he"), out);
+    }
+
+    @Test
+    void completionsOfWhatWasTypedStayAhead() {
+        trie.insert("he", 50000);
+        trie.insert("help", 800);
+        trie.insert("helpful", 20);
+        trie.insert("hello", 300);
+
+        List<String> out = suggest("help", 6);
+        assertEquals(List.of("help", "helpful"), out.subList(0, 2));
+        assertTrue(out.indexOf("hello") > 1);
+    }
+
+    @Test
+    void oldBurstOfUsesDecaysBelowRecentOnes() {
+        long now = System.currentTimeMillis();
+        long hour = 3_600_000L;
+        // the same history seen right after the burst and eight half-lives (168 h each) later
+        FrequencyAwareTrie fresh = new FrequencyAwareTrie(normalizer, new CategoryService(), 168);
+        FrequencyAwareTrie later = new FrequencyAwareTrie(normalizer, new CategoryService(), 168);
+        for (FrequencyAwareTrie t : List.of(fresh, later)) {
+            t.insert("qaba", 10);
+            t.insert("qadi", 10);
+        }
+        fresh.recordUse("qaba", 100, now - hour);
+        fresh.recordUse("qadi", 3, now);
+        later.recordUse("qaba", 100, now - 8 * 168 * hour);
+        later.recordUse("qadi", 3, now);
+
+        assertEquals(List.of("qaba", "qadi"), suggest(pipelineOver(fresh), "qa", 2));
+        // qaba has far more raw uses (110 vs 13), but 100 uses eight half-lives ago are worth about 0.4 today
+        assertEquals(List.of("qadi", "qaba"), suggest(pipelineOver(later), "qa", 2));
+    }
+}
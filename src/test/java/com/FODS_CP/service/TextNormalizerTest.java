@@ -0,0 +1,76 @@
+package com.FODS_CP.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextNormalizerTest {
+
+    private final TextNormalizer plain = new TextNormalizer(false);
+    private final TextNormalizer folding = new TextNormalizer(true);
+
+    private static List<String> describe(List<TextNormalizer.Token> tokens) {
+        List<String> out = new ArrayList<>();
+        for (TextNormalizer.Token t : tokens) out.add(t.surface + "|" + t.key + "|" + t.start + "-" + t.end);
+        return out;
+    }
+
+    @Test
+    void normalizeFoldsCaseWidthAndCompatibilityForms() {
+        assertEquals("", plain.normalize(null));
+        assertEquals("hello", plain.normalize("  Hello "));
+        assertEquals("hello", plain.normalize("ＨＥＬＬＯ")); // full-width
+        assertEquals("file", plain.normalize("ﬁle"));       // ligature
+        assertEquals("caf\u00e9", plain.normalize("Cafe\u0301")); // decomposed input composes
+        assertEquals("straße", plain.normalize("Straße"));
+    }
+
+    @Test
+    void diacriticFoldingIsOptional() {
+        assertEquals("café", plain.normalize("Café"));
+        assertEquals("cafe", folding.normalize("Café"));
+        assertEquals("uber", folding.normalize("Über"));
+        assertEquals("straße", folding.normalize("Straße")); // ß is a letter, not a mark
+    }
+
+    @Test
+    void caseFoldingIgnoresTheDefaultLocale() {
+        Locale before = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr"));
+            assertEquals("title", plain.normalize("TITLE"));
+        } finally {
+            Locale.setDefault(before);
+        }
+    }
+
+    @Test
+    void tokenizeKeepsOffsetsIntoTheSource() {
+        String text = "Don't stop—ÉTÉ 2024, rock' n roll";
+        assertEquals(List.of("Don't|don't|0-5", "stop|stop|6-10", "ÉTÉ|été|11-14", "2024|2024|15-19",
+                "rock|rock|21-25", "n|n|27-28", "roll|roll|29-33"), describe(plain.tokenize(text)));
+        for (TextNormalizer.Token t : plain.tokenize(text)) assertEquals(t.surface, text.substring(t.start, t.end));
+    }
+
+    @Test
+    void tokenizeCountsCharsForSupplementaryCodePoints() {
+        // U+1D49C is one code point but two chars; NFKC maps it to "A"
+        String text = "𝒜bc, x";
+        assertEquals(List.of("𝒜bc|abc|0-4", "x|x|6-7"), describe(plain.tokenize(text)));
+        assertTrue(plain.tokenize(null).isEmpty());
+        assertTrue(plain.tokenize(" ,.! ").isEmpty());
+    }
+
+    @Test
+    void contextHelpers() {
+        assertEquals("how are you", plain.normalizeContext("  How   ARE you? "));
+        assertEquals("", plain.normalizeContext("   "));
+        assertEquals("you", plain.lastToken("how are YOU?! "));
+        assertEquals("", plain.lastToken("!!!"));
+        assertEquals("", plain.lastToken(null));
+    }
+}